@@ -0,0 +1,84 @@
+package com.uma.example.springuma.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Compresion y descompresion de ImageUtils por codec y tamaño de imagen. Las variantes "Stream" escriben en un
+// OutputStream nulo: miden solo el codec y los buffers del pool, sin el byte[] del resultado.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageUtilsBenchmark {
+
+    @Param({"none", "deflate", "lz4"})
+    private String codec;
+
+    // Bytes de la imagen: 64 KB, 1 MB y 8 MB
+    @Param({"65536", "1048576", "8388608"})
+    private int tamano;
+
+    private ImageCodec imageCodec;
+    private byte[] imagen;
+    private byte[] comprimida;
+
+    @Setup
+    public void preparar() {
+        imageCodec = ImageCodec.porNombre(codec);
+        imagen = pixeles(tamano);
+        comprimida = ImageUtils.compressImage(imagen, imageCodec);
+    }
+
+    @Benchmark
+    public byte[] comprimir() {
+        return ImageUtils.compressImage(imagen, imageCodec);
+    }
+
+    @Benchmark
+    public byte[] descomprimir() {
+        return ImageUtils.decompressImage(comprimida, imageCodec);
+    }
+
+    @Benchmark
+    public long comprimirStream() throws IOException {
+        return ImageUtils.compressImage(new ByteArrayInputStream(imagen), OutputStream.nullOutputStream(), imageCodec);
+    }
+
+    @Benchmark
+    public void descomprimirStream() throws IOException {
+        ImageUtils.decompressImage(new ByteArrayInputStream(comprimida), OutputStream.nullOutputStream(), imageCodec);
+    }
+
+    // Pixeles RGB con degradados y ruido, que se comprimen de forma parecida a una radiografia sin formato
+    static byte[] pixeles(int tamano) {
+        Random random = new Random(42);
+        byte[] datos = new byte[tamano];
+        int ancho = 1024 * 3;
+        for (int i = 0; i < tamano; i++) {
+            int x = i % ancho;
+            int y = i / ancho;
+            datos[i] = (byte) ((x / 12 + y / 4) + random.nextInt(8));
+        }
+        return datos;
+    }
+}
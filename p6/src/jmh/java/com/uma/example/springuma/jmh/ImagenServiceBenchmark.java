@@ -0,0 +1,131 @@
+package com.uma.example.springuma.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.uma.example.springuma.SpringumaApplication;
+import com.uma.example.springuma.model.ContenidoImagen;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.MedicoService;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PacienteService;
+
+// Subida y descarga de imagenes con ImagenService contra una H2 en memoria, sin servidor web: mide la base de
+// datos, el almacen y el codec juntos. Cada subida de "subir" lleva un contador en sus ultimos bytes, para que el
+// almacen en disco no la deduplique con la anterior, y se borran al final de cada iteracion, fuera de la medicion.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagenServiceBenchmark {
+
+    @Param({"filesystem", "blob"})
+    private String almacen;
+
+    // image/png se guarda sin comprimir, application/octet-stream con el codec por defecto
+    @Param({"image/png", "application/octet-stream"})
+    private String contentType;
+
+    // Bytes de la imagen: 64 KB y 1 MB
+    @Param({"65536", "1048576"})
+    private int tamano;
+
+    private ConfigurableApplicationContext context;
+    private Path ruta;
+    private ImagenService imagenService;
+    private Paciente paciente;
+    private String nombre;
+    private byte[] datos;
+    private long contador;
+    private final List<Long> subidas = new ArrayList<>();
+    private ContenidoImagen contenido;
+
+    @Setup
+    public void preparar() throws IOException {
+        ruta = Files.createTempDirectory("jmh-imagenes");
+        context = new SpringApplicationBuilder(SpringumaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "imagen.store=" + almacen,
+                        "imagen.store.ruta=" + ruta,
+                        "prediccion.backend=stub",
+                        "prediccion.async=false",
+                        "logging.level.root=WARN")
+                .run();
+        imagenService = context.getBean(ImagenService.class);
+
+        Medico medico = context.getBean(MedicoService.class).addMedico(new Medico("1", "Grenheir", "Radiólogo"));
+        paciente = context.getBean(PacienteService.class)
+                .addPaciente(new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico));
+        nombre = "image/png".equals(contentType) ? "imagen.png" : "imagen.dat";
+        datos = ImageUtilsBenchmark.pixeles(tamano);
+        long id = imagenService.guardarImagen(nombre, contentType, new ByteArrayInputStream(datos), paciente).getId();
+        contenido = imagenService.getContenido(id).orElseThrow();
+    }
+
+    @TearDown
+    public void cerrar() throws IOException {
+        context.close();
+        try (Stream<Path> ficheros = Files.walk(ruta)) {
+            ficheros.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    // Consulta de los metadatos y descarga descomprimiendo hacia un stream nulo
+    @Benchmark
+    public ContenidoImagen descargar() throws IOException {
+        ContenidoImagen leido = imagenService.getContenido(contenido.getId()).orElseThrow();
+        imagenService.downloadImage(leido, OutputStream.nullOutputStream());
+        return leido;
+    }
+
+    // Lo mismo que uploadImage, pero con el id para poder borrarla despues
+    @Benchmark
+    public Imagen subir() throws IOException {
+        ByteBuffer.wrap(datos).putLong(datos.length - Long.BYTES, ++contador);
+        Imagen imagen = imagenService.guardarImagen(nombre, contentType, new ByteArrayInputStream(datos), paciente);
+        subidas.add(imagen.getId());
+        return imagen;
+    }
+
+    @TearDown(Level.Iteration)
+    public void borrarSubidas() throws IOException {
+        for (Long id : subidas) {
+            imagenService.removeImagenByID(id);
+        }
+        subidas.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package com.uma.example.springuma.jmh;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ImagenResumen;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+
+// Serializacion JSON de las respuestas de la API: listas de informes con el grafo Informe -> Imagen -> Paciente
+// -> Medico completo, listas de ImagenResumen y lectura de un Paciente como llega en un POST. El ObjectMapper se
+// configura como el de Spring Boot (Jackson2ObjectMapperBuilder).
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    // Elementos de cada lista
+    @Param({"1", "100"})
+    private int elementos;
+
+    private ObjectWriter escritorInformes;
+    private ObjectWriter escritorResumenes;
+    private ObjectReader lectorPaciente;
+    private List<Informe> informes;
+    private List<ImagenResumen> resumenes;
+    private byte[] pacienteJson;
+
+    @Setup
+    public void preparar() throws JsonProcessingException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        escritorInformes = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Informe.class));
+        escritorResumenes = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, ImagenResumen.class));
+        lectorPaciente = objectMapper.readerFor(Paciente.class);
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+        informes = new ArrayList<>(elementos);
+        resumenes = new ArrayList<>(elementos);
+        for (int i = 0; i < elementos; i++) {
+            Paciente paciente = new Paciente("Paciente " + i, 30 + i % 50, "Cita cardiologia", "1234" + i + "P", medico);
+            paciente.setId(i + 1);
+            Imagen imagen = new Imagen();
+            imagen.setId(i + 1);
+            imagen.setNombre("imagen" + i + ".png");
+            imagen.setFecha(Calendar.getInstance());
+            imagen.setCodec("none");
+            imagen.setAlmacen("filesystem");
+            imagen.setHash("6ae68c4e04a7a541eae8c510e170996aff3a6b3037cebd8d2d73ad89a1041506");
+            imagen.setTamano(1024L * 1024);
+            imagen.setPaciente(paciente);
+            Informe informe = new Informe();
+            informe.setId(i + 1);
+            informe.setPrediccion("Not cancer (label 0),  score: 0.984481368213892");
+            informe.setContenido("Sin hallazgos relevantes en la imagen " + i);
+            informe.setImagen(imagen);
+            informes.add(informe);
+            resumenes.add(new ImagenResumen(imagen.getId(), imagen.getNombre(), imagen.getFecha(), imagen.getHash(),
+                    imagen.getTamano(), paciente.getId(), paciente.getNombre(), paciente.getDni()));
+        }
+        pacienteJson = objectMapper.writeValueAsBytes(informes.get(0).getImagen().getPaciente());
+    }
+
+    @Benchmark
+    public byte[] serializarInformes() throws JsonProcessingException {
+        return escritorInformes.writeValueAsBytes(informes);
+    }
+
+    @Benchmark
+    public byte[] serializarResumenes() throws JsonProcessingException {
+        return escritorResumenes.writeValueAsBytes(resumenes);
+    }
+
+    @Benchmark
+    public Paciente deserializarPaciente() throws Exception {
+        return lectorPaciente.readValue(pacienteJson);
+    }
+}
@@ -0,0 +1,115 @@
+package com.uma.example.springuma.carga;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Compara el resultado de una prueba de carga con el baseline guardado en carga.baseline.
+// Es una regresion que un percentil supere al del baseline en mas de carga.tolerancia (y en mas de carga.margen-ms,
+// para que el ruido en latencias de pocos ms no falle la prueba), que la tasa de errores suba mas de
+// carga.margen-errores o, en el modelo cerrado, que el throughput baje mas de carga.tolerancia.
+// Las regresiones se escriben en carga.regresiones; el perfil carga de Maven falla en verify si existe ese fichero,
+// despues de parar la aplicacion. Con -Dcarga.actualizar-baseline=true el resultado pasa a ser el nuevo baseline.
+// Las latencias del baseline son absolutas y solo valen para la maquina y JDK donde se grabaron: en otro entorno
+// (otro portatil, la CI) hay que grabarlo primero alli con carga.actualizar-baseline y compararse con ese.
+public class Baseline {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Path ruta;
+    private final Path resultado;
+    private final Path regresiones;
+    private final double tolerancia;
+    private final double margenMs;
+    private final double margenErrores;
+    private final boolean compararThroughput;
+    private final boolean actualizar;
+
+    public Baseline(Properties config) {
+        this.ruta = Path.of(config.getProperty("carga.baseline"));
+        this.resultado = Path.of(config.getProperty("carga.resultado"));
+        this.regresiones = Path.of(config.getProperty("carga.regresiones"));
+        this.tolerancia = Double.parseDouble(config.getProperty("carga.tolerancia"));
+        this.margenMs = Double.parseDouble(config.getProperty("carga.margen-ms"));
+        this.margenErrores = Double.parseDouble(config.getProperty("carga.margen-errores"));
+        this.compararThroughput = Double.parseDouble(config.getProperty("carga.tasa", "0")) <= 0;
+        this.actualizar = Boolean.parseBoolean(config.getProperty("carga.actualizar-baseline", "false"));
+    }
+
+    public void guardarResultado(Map<String, ResumenOperacion> operaciones) throws IOException {
+        Files.createDirectories(resultado.toAbsolutePath().getParent());
+        objectMapper.writeValue(resultado.toFile(), operaciones);
+    }
+
+    // true si no hay regresiones
+    public boolean comprobar(Map<String, ResumenOperacion> operaciones) throws IOException {
+        Files.deleteIfExists(regresiones);
+        List<String> encontradas = buscarRegresiones(operaciones);
+        if (encontradas.isEmpty()) {
+            return true;
+        }
+        System.out.println("Regresiones respecto a " + ruta + ":");
+        encontradas.forEach(r -> System.out.println("  " + r));
+        Files.write(regresiones, encontradas);
+        return false;
+    }
+
+    // Si la prueba no llega a terminar tambien debe fallar el build, pero despues de parar la aplicacion
+    public static void registrarFallo(Properties config, Exception e) throws IOException {
+        Path regresiones = Path.of(config.getProperty("carga.regresiones", "target/carga-regresiones.txt"));
+        Files.createDirectories(regresiones.toAbsolutePath().getParent());
+        StringWriter traza = new StringWriter();
+        e.printStackTrace(new PrintWriter(traza));
+        Files.writeString(regresiones, "La prueba de carga no ha terminado: " + traza);
+    }
+
+    private List<String> buscarRegresiones(Map<String, ResumenOperacion> operaciones) throws IOException {
+        if (actualizar) {
+            objectMapper.writeValue(ruta.toFile(), operaciones);
+            System.out.println("Baseline actualizado: " + ruta);
+            return List.of();
+        }
+        if (!Files.exists(ruta)) {
+            System.out.println("No hay baseline en " + ruta + ", no se compara");
+            return List.of();
+        }
+        Map<String, ResumenOperacion> baseline = objectMapper.readValue(ruta.toFile(), new TypeReference<Map<String, ResumenOperacion>>() {});
+        List<String> regresiones = new ArrayList<>();
+        baseline.forEach((operacion, antes) -> {
+            ResumenOperacion ahora = operaciones.get(operacion);
+            if (ahora == null) {
+                return;
+            }
+            latencia(regresiones, operacion, "p50", antes.getP50(), ahora.getP50());
+            latencia(regresiones, operacion, "p95", antes.getP95(), ahora.getP95());
+            latencia(regresiones, operacion, "p99", antes.getP99(), ahora.getP99());
+            if (ahora.getTasaErrores() > antes.getTasaErrores() + margenErrores) {
+                regresiones.add(String.format("%s: tasa de errores %.2f%% (baseline %.2f%%)", operacion,
+                        ahora.getTasaErrores() * 100, antes.getTasaErrores() * 100));
+            }
+            if (compararThroughput && ahora.getThroughput() < antes.getThroughput() * (1 - tolerancia)) {
+                regresiones.add(String.format("%s: throughput %.1f req/s (baseline %.1f req/s)", operacion,
+                        ahora.getThroughput(), antes.getThroughput()));
+            }
+        });
+        if (regresiones.isEmpty()) {
+            System.out.println("Sin regresiones respecto a " + ruta);
+        }
+        return regresiones;
+    }
+
+    private void latencia(List<String> regresiones, String operacion, String percentil, double antes, double ahora) {
+        if (ahora > antes * (1 + tolerancia) && ahora > antes + margenMs) {
+            regresiones.add(String.format("%s: %s %.2f ms (baseline %.2f ms)", operacion, percentil, ahora, antes));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.uma.example.springuma.carga;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Latencias y errores de una operacion durante la medicion. Se guardan todas las latencias para calcular los
+// percentiles exactos al final; con las tasas de una prueba de carga son pocos MB.
+public class Estadisticas {
+
+    private long[] latencias = new long[4096];
+    private int total;
+    private long errores;
+
+    public synchronized void registrar(long nanos, boolean error) {
+        if (total == latencias.length) {
+            latencias = Arrays.copyOf(latencias, total * 2);
+        }
+        latencias[total++] = nanos;
+        if (error) {
+            errores++;
+        }
+    }
+
+    public synchronized ResumenOperacion resumen(Duration duracion) {
+        long[] ordenadas = Arrays.copyOf(latencias, total);
+        Arrays.sort(ordenadas);
+        ResumenOperacion resumen = new ResumenOperacion();
+        resumen.setPeticiones(total);
+        resumen.setErrores(errores);
+        resumen.setTasaErrores(total == 0 ? 0 : (double) errores / total);
+        resumen.setThroughput(total / (duracion.toMillis() / 1000.0));
+        resumen.setP50(percentil(ordenadas, 0.50));
+        resumen.setP95(percentil(ordenadas, 0.95));
+        resumen.setP99(percentil(ordenadas, 0.99));
+        resumen.setMax(total == 0 ? 0 : ordenadas[total - 1] / 1e6);
+        return resumen;
+    }
+
+    // Percentil por el metodo del rango mas cercano, en milisegundos
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        int rango = (int) Math.ceil(p * ordenadas.length);
+        return ordenadas[Math.max(rango - 1, 0)] / 1e6;
+    }
+}
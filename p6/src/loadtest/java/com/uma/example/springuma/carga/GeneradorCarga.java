@@ -0,0 +1,287 @@
+package com.uma.example.springuma.carga;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Generador de carga contra una instancia en marcha (carga.url). Da de alta medicos, pacientes e imagenes de prueba
+// con las importaciones masivas y reproduce durante carga.duracion una mezcla ponderada de operaciones clinicas:
+// pacientes de un medico, descarga y subida de imagenes y alta de informes (con prediccion, usar prediccion.backend=stub).
+// Al final escribe p50/p95/p99, throughput y tasa de errores por operacion y los compara con el baseline.
+// La configuracion esta en carga.properties y cada clave se puede cambiar con -D<clave>=<valor>.
+public class GeneradorCarga {
+
+    static final String[] OPERACIONES = {"pacientes-medico", "descarga-imagen", "subida-imagen", "informe"};
+
+    private final Properties config;
+    private final RestClient cliente;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Estadisticas> estadisticas = new LinkedHashMap<>();
+    private final Map<String, String> primerError = new ConcurrentHashMap<>();
+    private final List<Long> medicos = new ArrayList<>();
+    private final List<Long> pacientes = new ArrayList<>();
+    private final List<Long> imagenes = new ArrayList<>();
+    private final Map<Integer, byte[]> imagenesBase = new LinkedHashMap<>();
+    private final int[] pesos = new int[OPERACIONES.length];
+    private final int pesoTotal;
+    // Los dni llevan un prefijo por ejecucion para poder repetir la prueba contra la misma base de datos
+    private final String prefijo = "C" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    public GeneradorCarga(Properties config) {
+        this.config = config;
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(duracion("carga.timeout"));
+        this.cliente = RestClient.builder()
+                .baseUrl(config.getProperty("carga.url"))
+                .requestFactory(factory)
+                .build();
+        int suma = 0;
+        for (int i = 0; i < OPERACIONES.length; i++) {
+            pesos[i] = entero("carga.mezcla." + OPERACIONES[i]);
+            suma += pesos[i];
+            estadisticas.put(OPERACIONES[i], new Estadisticas());
+        }
+        this.pesoTotal = suma;
+        Random random = new Random(entero("carga.semilla"));
+        for (String tamano : config.getProperty("carga.imagen.tamanos").split(",")) {
+            byte[] imagen = new byte[Integer.parseInt(tamano.trim())];
+            random.nextBytes(imagen);
+            imagenesBase.put(imagen.length, imagen);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        try (InputStream in = GeneradorCarga.class.getResourceAsStream("/carga.properties")) {
+            if (in != null) {
+                config.load(in);
+            }
+        }
+        config.putAll(System.getProperties());
+
+        // Siempre sale con 0 para que Maven llegue a parar la aplicacion; los fallos se escriben en carga.regresiones
+        // y el enforcer hace fallar el build en verify
+        try {
+            GeneradorCarga generador = new GeneradorCarga(config);
+            generador.preparar();
+            Map<String, ResumenOperacion> resultado = generador.ejecutar();
+            generador.imprimir(resultado);
+            Baseline baseline = new Baseline(config);
+            baseline.guardarResultado(resultado);
+            baseline.comprobar(resultado);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Baseline.registrarFallo(config, e);
+        }
+        System.exit(0);
+    }
+
+    // Datos de prueba: medicos y pacientes por NDJSON y las imagenes iniciales una a una, como las sube un cliente
+    public void preparar() throws IOException {
+        int numMedicos = entero("carga.medicos");
+        int pacientesPorMedico = entero("carga.pacientes-por-medico");
+        StringBuilder ndjson = new StringBuilder();
+        for (int m = 0; m < numMedicos; m++) {
+            ndjson.append(objectMapper.writeValueAsString(Map.of("dni", prefijo + "M" + m,
+                    "nombre", "Medico " + m, "especialidad", "Radiologia"))).append('\n');
+        }
+        cliente.post().uri("/medico/importar").contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjson.toString()).retrieve().toBodilessEntity();
+        ndjson.setLength(0);
+        for (int m = 0; m < numMedicos; m++) {
+            for (int p = 0; p < pacientesPorMedico; p++) {
+                ndjson.append(objectMapper.writeValueAsString(Map.of("dni", prefijo + "P" + m + "-" + p,
+                        "nombre", "Paciente " + p, "edad", 20 + p % 60, "cita", "Revision",
+                        "medico", Map.of("dni", prefijo + "M" + m)))).append('\n');
+            }
+        }
+        cliente.post().uri("/paciente/importar").contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjson.toString()).retrieve().toBodilessEntity();
+
+        ParameterizedTypeReference<List<Map<String, Object>>> lista = new ParameterizedTypeReference<>() {};
+        for (int m = 0; m < numMedicos; m++) {
+            Map<?, ?> medico = cliente.get().uri("/medico/dni/{dni}", prefijo + "M" + m).retrieve().body(Map.class);
+            long id = ((Number) medico.get("id")).longValue();
+            medicos.add(id);
+            for (Map<String, Object> paciente : cliente.get().uri("/paciente/medico/{id}?limit=1000", id).retrieve().body(lista)) {
+                pacientes.add(((Number) paciente.get("id")).longValue());
+            }
+        }
+
+        Random random = new Random(entero("carga.semilla"));
+        List<Long> conImagenes = new ArrayList<>();
+        for (int i = 0; i < entero("carga.imagenes-iniciales"); i++) {
+            long paciente = elegir(pacientes, random);
+            cliente.post().uri("/imagen").contentType(MediaType.MULTIPART_FORM_DATA)
+                    .body(subida(paciente, random)).retrieve().toBodilessEntity();
+            if (!conImagenes.contains(paciente)) {
+                conImagenes.add(paciente);
+            }
+        }
+        for (long paciente : conImagenes) {
+            for (Map<String, Object> imagen : cliente.get().uri("/imagen/paciente/{id}?limit=1000", paciente).retrieve().body(lista)) {
+                imagenes.add(((Number) imagen.get("id")).longValue());
+            }
+        }
+        System.out.printf("Datos de prueba: %d medicos, %d pacientes, %d imagenes%n", medicos.size(), pacientes.size(), imagenes.size());
+    }
+
+    // Con carga.tasa > 0 las peticiones salen a ritmo fijo (modelo abierto) y la latencia se mide desde el momento
+    // en que debian salir, asi las esperas en cola cuentan aunque el servidor se atasque. Si no, carga.usuarios
+    // usuarios lanzan peticiones una tras otra (modelo cerrado), que mide el throughput maximo.
+    public Map<String, ResumenOperacion> ejecutar() throws InterruptedException {
+        Duration calentamiento = duracion("carga.calentamiento");
+        Duration duracion = duracion("carga.duracion");
+        int usuarios = entero("carga.usuarios");
+        double tasa = Double.parseDouble(config.getProperty("carga.tasa", "0"));
+        long semilla = entero("carga.semilla");
+
+        long inicio = System.nanoTime();
+        long inicioMedicion = inicio + calentamiento.toNanos();
+        long fin = inicioMedicion + duracion.toNanos();
+        ExecutorService hilos = Executors.newFixedThreadPool(usuarios);
+        if (tasa > 0) {
+            Random random = new Random(semilla);
+            long intervalo = (long) (TimeUnit.SECONDS.toNanos(1) / tasa);
+            for (long programada = inicio; programada < fin; programada += intervalo) {
+                LockSupport.parkNanos(programada - System.nanoTime());
+                String operacion = elegirOperacion(random);
+                Random aleatorio = new Random(random.nextLong());
+                long salida = programada;
+                hilos.execute(() -> medir(operacion, aleatorio, salida, inicioMedicion));
+            }
+        } else {
+            for (int u = 0; u < usuarios; u++) {
+                Random random = new Random(semilla + u);
+                hilos.execute(() -> {
+                    while (System.nanoTime() < fin) {
+                        medir(elegirOperacion(random), random, -1, inicioMedicion);
+                    }
+                });
+            }
+        }
+        hilos.shutdown();
+        hilos.awaitTermination(duracion("carga.timeout").multipliedBy(2).toMillis() + duracion.toMillis(), TimeUnit.MILLISECONDS);
+
+        Map<String, ResumenOperacion> resultado = new LinkedHashMap<>();
+        estadisticas.forEach((operacion, e) -> resultado.put(operacion, e.resumen(duracion)));
+        primerError.forEach((operacion, error) -> System.err.println("Primer error en " + operacion + ": " + error));
+        return resultado;
+    }
+
+    public void imprimir(Map<String, ResumenOperacion> resultado) {
+        System.out.printf("%-18s %10s %8s %9s %9s %9s %9s %9s%n", "operacion", "peticiones", "errores", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        resultado.forEach((operacion, r) -> System.out.printf("%-18s %10d %7.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                operacion, r.getPeticiones(), r.getTasaErrores() * 100, r.getThroughput(), r.getP50(), r.getP95(), r.getP99(), r.getMax()));
+    }
+
+    // La preparacion de la peticion (copiar la imagen, elegir ids) no cuenta en el modelo cerrado
+    private void medir(String operacion, Random random, long programada, long inicioMedicion) {
+        Callable<?> peticion = peticion(operacion, random);
+        long inicio = programada >= 0 ? programada : System.nanoTime();
+        boolean error = false;
+        try {
+            peticion.call();
+        } catch (Exception e) {
+            error = true;
+            primerError.putIfAbsent(operacion, e.toString());
+        }
+        long fin = System.nanoTime();
+        if (inicio >= inicioMedicion) {
+            estadisticas.get(operacion).registrar(fin - inicio, error);
+        }
+    }
+
+    private Callable<?> peticion(String operacion, Random random) {
+        switch (operacion) {
+            case "pacientes-medico": {
+                long medico = elegir(medicos, random);
+                return () -> cliente.get().uri("/paciente/medico/{id}", medico).retrieve().toBodilessEntity();
+            }
+            case "descarga-imagen": {
+                long imagen = elegir(imagenes, random);
+                return () -> cliente.get().uri("/imagen/{id}", imagen).retrieve().body(byte[].class);
+            }
+            case "subida-imagen": {
+                MultiValueMap<String, HttpEntity<?>> cuerpo = subida(elegir(pacientes, random), random);
+                return () -> cliente.post().uri("/imagen").contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(cuerpo).retrieve().toBodilessEntity();
+            }
+            case "informe": {
+                Map<String, Object> informe = Map.of("imagen", Map.of("id", elegir(imagenes, random)),
+                        "contenido", "Informe de la prueba de carga");
+                return () -> cliente.post().uri("/informe").contentType(MediaType.APPLICATION_JSON)
+                        .body(informe).retrieve().toBodilessEntity();
+            }
+            default:
+                throw new IllegalArgumentException("Operacion desconocida: " + operacion);
+        }
+    }
+
+    // Imagen de uno de los tamaños configurados con los primeros bytes al azar, para que no coincida el hash
+    // con otra subida y el almacen no la deduplique
+    private MultiValueMap<String, HttpEntity<?>> subida(long paciente, Random random) {
+        List<byte[]> base = new ArrayList<>(imagenesBase.values());
+        byte[] contenido = base.get(random.nextInt(base.size()));
+        contenido = Arrays.copyOf(contenido, contenido.length);
+        byte[] cabecera = new byte[Math.min(16, contenido.length)];
+        random.nextBytes(cabecera);
+        System.arraycopy(cabecera, 0, contenido, 0, cabecera.length);
+        MultipartBodyBuilder partes = new MultipartBodyBuilder();
+        partes.part("image", new ByteArrayResource(contenido)).filename("carga.png").contentType(MediaType.IMAGE_PNG);
+        partes.part("paciente", Map.of("id", paciente), MediaType.APPLICATION_JSON);
+        return partes.build();
+    }
+
+    private String elegirOperacion(Random random) {
+        int valor = random.nextInt(pesoTotal);
+        for (int i = 0; i < OPERACIONES.length; i++) {
+            valor -= pesos[i];
+            if (valor < 0) {
+                return OPERACIONES[i];
+            }
+        }
+        return OPERACIONES[OPERACIONES.length - 1];
+    }
+
+    private static long elegir(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private int entero(String clave) {
+        return Integer.parseInt(config.getProperty(clave).trim());
+    }
+
+    private Duration duracion(String clave) {
+        return Duration.parse(config.getProperty(clave).trim());
+    }
+}
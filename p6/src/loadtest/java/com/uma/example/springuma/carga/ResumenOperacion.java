@@ -0,0 +1,82 @@
+package com.uma.example.springuma.carga;
+
+// Resultado de una operacion en una prueba de carga. Es tambien el formato de cada entrada del baseline.
+// Las latencias van en milisegundos y el throughput en peticiones por segundo.
+public class ResumenOperacion {
+
+    private long peticiones;
+    private long errores;
+    private double tasaErrores;
+    private double throughput;
+    private double p50;
+    private double p95;
+    private double p99;
+    private double max;
+
+    public ResumenOperacion() {
+    }
+
+    public long getPeticiones() {
+        return peticiones;
+    }
+
+    public void setPeticiones(long peticiones) {
+        this.peticiones = peticiones;
+    }
+
+    public long getErrores() {
+        return errores;
+    }
+
+    public void setErrores(long errores) {
+        this.errores = errores;
+    }
+
+    public double getTasaErrores() {
+        return tasaErrores;
+    }
+
+    public void setTasaErrores(double tasaErrores) {
+        this.tasaErrores = tasaErrores;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public void setP50(double p50) {
+        this.p50 = p50;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public void setP95(double p95) {
+        this.p95 = p95;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public void setP99(double p99) {
+        this.p99 = p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+}
@@ -0,0 +1,33 @@
+package com.uma.example.springuma.config;
+
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// CacheManager de la cache de segundo nivel de Hibernate, creado y cerrado con el contexto de Spring.
+// El proveedor JCache comparte un unico CacheManager por URI en toda la JVM: si conviven dos contextos
+// (por ejemplo en los tests) veria cada uno las entidades cacheadas del otro.
+@Configuration
+public class EntidadCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entidadCacheManager() {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        XmlConfiguration configuracion = new XmlConfiguration(getClass().getResource("/ehcache.xml"), getClass().getClassLoader());
+        return provider.getCacheManager(URI.create("urn:springuma:entidades:" + UUID.randomUUID()), configuracion);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entidadCacheCustomizer(CacheManager entidadCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entidadCacheManager);
+    }
+}
@@ -0,0 +1,27 @@
+package com.uma.example.springuma.config;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+// Hilos de los workers de prediccion segun el modo de Spring Boot:
+// con spring.threads.virtual.enabled=true y Java 21 son hilos virtuales, igual que los de Tomcat y @Async;
+// en Java 17 la propiedad no tiene efecto y se usan hilos de plataforma.
+@Configuration
+public class HilosConfig {
+
+    @Bean
+    public ThreadFactory prediccionThreadFactory(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return new VirtualThreadTaskExecutor("prediccion-").getVirtualThreadFactory();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("prediccion-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
@@ -0,0 +1,56 @@
+package com.uma.example.springuma.config;
+
+import java.util.Iterator;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.uma.example.springuma.utils.LimiteLogs;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.filter.Filter;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Metricas de la aplicacion, publicadas en /actuator/metrics y /actuator/prometheus.
+// Los repositorios de Spring Data ya se miden solos (spring.data.repository.invocations, por repositorio y metodo);
+// el aspecto hace falta para @Timed en el resto de componentes, como RepositoryImagenContenido.
+@Configuration
+public class MetricasConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    // logs.descartados: eventos que han descartado los filtros LimiteLogs de logback-spring.xml, por prefijo
+    @Bean
+    public MeterBinder logsDescartados() {
+        return registry -> {
+            ILoggerFactory factoria = LoggerFactory.getILoggerFactory();
+            if (!(factoria instanceof LoggerContext)) {
+                return;
+            }
+            for (Logger logger : ((LoggerContext) factoria).getLoggerList()) {
+                for (Iterator<Appender<ILoggingEvent>> appenders = logger.iteratorForAppenders(); appenders.hasNext();) {
+                    for (Filter<ILoggingEvent> filtro : appenders.next().getCopyOfAttachedFiltersList()) {
+                        if (filtro instanceof LimiteLogs) {
+                            LimiteLogs limite = (LimiteLogs) filtro;
+                            FunctionCounter.builder("logs.descartados", limite, LimiteLogs::getDescartados)
+                                    .description("Eventos de log descartados por muestreo o limite por segundo")
+                                    .tag("prefijo", limite.getPrefijo())
+                                    .register(registry);
+                        }
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.uma.example.springuma.config;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.resources.ConnectionProvider;
+
+// Cliente HTTP compartido para las llamadas al modelo de prediccion.
+// Mantiene las conexiones abiertas (keep-alive) entre predicciones en lugar de abrir una conexion TCP+TLS por llamada.
+// Con hilos virtuales se usa el cliente del JDK: el pool de HttpClient 4 conecta y espera conexion libre dentro de
+// bloques synchronized, que dejarian el hilo virtual clavado a su hilo portador durante toda la espera.
+// Los clientes solo se crean con el backend remote: con onnx o stub no se abre ningun pool ni hilo de limpieza.
+@Configuration
+public class PrediccionHttpConfig {
+
+    @Value("${prediccion.http.max-conexiones:50}")
+    private int maxConexiones;
+
+    @Value("${prediccion.http.max-conexiones-por-ruta:20}")
+    private int maxConexionesPorRuta;
+
+    @Value("${prediccion.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${prediccion.http.read-timeout:20s}")
+    private Duration readTimeout;
+
+    // Espera maxima por una conexion libre del pool
+    @Value("${prediccion.http.pool-timeout:10s}")
+    private Duration poolTimeout;
+
+    // Las conexiones sin uso durante este tiempo se cierran
+    @Value("${prediccion.http.idle-timeout:30s}")
+    private Duration idleTimeout;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    @ConditionalOnProperty(name = "prediccion.backend", havingValue = "remote", matchIfMissing = true)
+    public CloseableHttpClient prediccionHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConexiones);
+        connectionManager.setDefaultMaxPerRoute(maxConexionesPorRuta);
+        // Comprueba las conexiones que llevan un rato paradas antes de reutilizarlas
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolTimeout.toMillis())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    // El limite de conexiones lo aplica ImagenAPIPredictor con un semaforo de prediccion.http.max-conexiones-por-ruta
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    @ConditionalOnProperty(name = "prediccion.backend", havingValue = "remote", matchIfMissing = true)
+    public HttpClient prediccionHttpClientVirtual() {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .executor(new VirtualThreadTaskExecutor("prediccion-http-"))
+                .build();
+    }
+
+    // Conexiones del cliente no bloqueante de la API reactiva (reactivo.enabled=true). Las peticiones que esperan
+    // conexion libre no ocupan hilo, asi que la cola de espera no tiene limite: la acota prediccion.http.pool-timeout
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnProperty(name = "reactivo.enabled", havingValue = "true")
+    public ConnectionProvider prediccionConexionesReactivas() {
+        return ConnectionProvider.builder("prediccion")
+                .maxConnections(maxConexionesPorRuta)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(poolTimeout)
+                .maxIdleTime(idleTimeout)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "reactivo.enabled", havingValue = "true")
+    public WebClient prediccionWebClient(WebClient.Builder builder, ConnectionProvider prediccionConexionesReactivas) {
+        reactor.netty.http.client.HttpClient httpClient = reactor.netty.http.client.HttpClient.create(prediccionConexionesReactivas)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.uma.example.springuma.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uma.example.springuma.controller.ImagenReactivaHandler;
+
+// Servidor Reactor Netty con la API reactiva de imagenes (ImagenReactivaHandler) en su propio puerto, junto al
+// Tomcat de la API normal. Atiende todas las peticiones con un numero fijo de hilos de event loop, asi que
+// las descargas, subidas y predicciones en curso no estan limitadas por el numero de hilos.
+// Se activa con reactivo.enabled=true.
+@Component
+@ConditionalOnProperty(name = "reactivo.enabled", havingValue = "true")
+public class ServidorReactivo implements SmartLifecycle {
+
+    // 0 elige un puerto libre
+    @Value("${reactivo.puerto:8081}")
+    private int puerto;
+
+    @Autowired
+    private ImagenReactivaHandler imagenReactivaHandler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private WebServer servidor;
+
+    @Override
+    public void start() {
+        HandlerStrategies estrategias = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory(puerto);
+        servidor = factory.getWebServer(RouterFunctions.toHttpHandler(imagenReactivaHandler.rutas(), estrategias));
+        servidor.start();
+    }
+
+    @Override
+    public void stop() {
+        if (servidor != null) {
+            servidor.stop();
+            servidor = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return servidor != null;
+    }
+
+    // Puerto en el que escucha, el real si se ha configurado 0
+    public int getPuerto() {
+        return servidor == null ? -1 : servidor.getPort();
+    }
+}
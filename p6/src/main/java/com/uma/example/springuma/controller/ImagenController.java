@@ -1,41 +1,254 @@
 package com.uma.example.springuma.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.CargaMasivaService;
+import com.uma.example.springuma.model.ContenidoImagen;
+import com.uma.example.springuma.model.ImagenNoEncontradaException;
+import com.uma.example.springuma.model.ImagenResumen;
 import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.ModeloNoDisponibleException;
 import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.utils.NdjsonWriter;
+import com.uma.example.springuma.utils.Paginacion;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 public class ImagenController {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagenController.class);
+
+    // Atributos de peticion con los que Tomcat envia un fichero con sendfile
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FICHERO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_DESDE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_HASTA = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ImagenService imagenService;
 
+    @Autowired
+    private CargaMasivaService cargaMasivaService;
+
+    @Autowired
+    private Paginacion paginacion;
+
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
+
+    // Cache-Control de las descargas de imagenes y derivadas
+    @Value("${imagen.http.max-age:P1D}")
+    private Duration maxAge;
+
+    @Value("${imagen.http.publica:true}")
+    private boolean publica;
+
+	// Descarga con validacion condicional: el contenido de una imagen no cambia nunca, asi que el hash SHA-256
+	// es una ETag fuerte y la fecha de subida el Last-Modified. Si el cliente ya la tiene se responde 304
+	// sin leer ni descomprimir nada. Con cabecera Range se devuelve solo el rango pedido (206).
 	@GetMapping("/imagen/{id}")
-	public ResponseEntity<?> downloadImage(@PathVariable long id){
-		byte[] imageData=imagenService.downloadImage(id);
-		return ResponseEntity.ok()
-        .contentType(MediaType.valueOf(
-            "image/png"
-        ))
-        .body(imageData);
+	public ResponseEntity<StreamingResponseBody> downloadImage(@PathVariable long id, @RequestHeader HttpHeaders headers,
+			WebRequest request, HttpServletRequest servletRequest){
+		Optional<ContenidoImagen> contenido = imagenService.getContenido(id);
+		if (contenido.isEmpty()) {
+			return ResponseEntity.notFound().build();
+		}
+		String etag = etag(contenido.get(), "");
+		if (noModificada(request, contenido.get(), etag)) {
+			return null;
+		}
+		Long tamano = contenido.get().getTamano();
+		HttpRange rango = tamano == null ? null : rango(headers, contenido.get(), etag);
+		if (rango != null) {
+			long desde = rango.getRangeStart(tamano);
+			long hasta = rango.getRangeEnd(tamano);
+			if (desde >= tamano || desde > hasta) {
+				return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+					.header(HttpHeaders.CONTENT_RANGE, "bytes */" + tamano)
+					.build();
+			}
+			long cantidad = hasta - desde + 1;
+			StreamingResponseBody parte = sendfile(servletRequest, contenido.get(), desde, cantidad) ? null
+				: out -> imagenService.downloadImage(contenido.get(), out, desde, cantidad);
+			return cabeceras(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), contenido.get(), etag)
+				.header(HttpHeaders.CONTENT_RANGE, "bytes " + desde + "-" + hasta + "/" + tamano)
+				.contentLength(cantidad)
+				.contentType(imagenService.getTipo(contenido.get()))
+				.body(parte);
+		}
+		// La imagen se escribe en la respuesta por bloques, sin cargarla entera en memoria
+		StreamingResponseBody imageData = tamano != null && sendfile(servletRequest, contenido.get(), 0, tamano) ? null
+			: out -> imagenService.downloadImage(contenido.get(), out);
+		ResponseEntity.BodyBuilder respuesta = cabeceras(ResponseEntity.ok(), contenido.get(), etag);
+		if (tamano != null) {
+			respuesta.contentLength(tamano);
+		}
+		return respuesta
+			.contentType(imagenService.getTipo(contenido.get()))
+			.body(imageData);
+	}
+
+	// Sin compresion, el fichero lo envia Tomcat con sendfile del disco al socket, sin copiarlo por la JVM.
+	// La respuesta va sin cuerpo (con Content-Length): el conector escribe el fichero al terminar la peticion.
+	private boolean sendfile(HttpServletRequest servletRequest, ContenidoImagen contenido, long desde, long cantidad) {
+		if (!Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SOPORTADO))) {
+			return false;
+		}
+		Optional<Path> fichero = imagenService.getFichero(contenido);
+		if (fichero.isEmpty()) {
+			return false;
+		}
+		servletRequest.setAttribute(SENDFILE_FICHERO, fichero.get().toAbsolutePath().toString());
+		servletRequest.setAttribute(SENDFILE_DESDE, desde);
+		servletRequest.setAttribute(SENDFILE_HASTA, desde + cantidad);
+		return true;
 	}
 
+    @GetMapping("/imagen/{id}/thumb")
+    public ResponseEntity<?> getMiniatura(@PathVariable("id") long id, WebRequest request) {
+        try {
+            Optional<ContenidoImagen> contenido = imagenService.getContenido(id);
+            if (contenido.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = etag(contenido.get(), "-thumb");
+            if (noModificada(request, contenido.get(), etag)) {
+                return null;
+            }
+            return imagenService.getMiniatura(id)
+                .map(miniatura -> cabeceras(ResponseEntity.ok(), contenido.get(), etag).contentType(tipoDerivadas()).body((Object) miniatura))
+                .orElse(ResponseEntity.notFound().build());
+        }
+        catch(Exception e){
+            log.error("Error al generar la miniatura", e);
+            return ResponseEntity.internalServerError().body("Error al generar la miniatura");
+        }
+    }
+
+    @GetMapping("/imagen/{id}/tiles")
+    public ResponseEntity<?> getPiramide(@PathVariable("id") long id) {
+        try {
+            return ResponseEntity.of(imagenService.getPiramide(id));
+        }
+        catch(Exception e){
+            log.error("Error al generar las teselas", e);
+            return ResponseEntity.internalServerError().body("Error al generar las teselas");
+        }
+    }
+
+    @GetMapping("/imagen/{id}/tile/{z}/{x}/{y}")
+    public ResponseEntity<?> getTesela(@PathVariable("id") long id, @PathVariable("z") int z,
+            @PathVariable("x") int x, @PathVariable("y") int y, WebRequest request) {
+        try {
+            Optional<ContenidoImagen> contenido = imagenService.getContenido(id);
+            if (contenido.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = etag(contenido.get(), "-" + z + "-" + x + "-" + y);
+            if (noModificada(request, contenido.get(), etag)) {
+                return null;
+            }
+            return imagenService.getTesela(id, z, x, y)
+                .map(tesela -> cabeceras(ResponseEntity.ok(), contenido.get(), etag).contentType(tipoDerivadas()).body((Object) tesela))
+                .orElse(ResponseEntity.notFound().build());
+        }
+        catch(Exception e){
+            log.error("Error al generar la tesela", e);
+            return ResponseEntity.internalServerError().body("Error al generar la tesela");
+        }
+    }
+
+    // ETag fuerte del contenido (o de una derivada suya, con sufijo); null en imagenes sin hash registrado
+    private static String etag(ContenidoImagen contenido, String sufijo) {
+        return contenido.getHash() == null ? null : "\"" + contenido.getHash() + sufijo + "\"";
+    }
+
+    // Comprueba If-None-Match / If-Modified-Since; si la copia del cliente es valida deja preparada la respuesta 304
+    private static boolean noModificada(WebRequest request, ContenidoImagen contenido, String etag) {
+        long fecha = contenido.getFecha() == null ? -1 : contenido.getFecha().toEpochMilli();
+        return request.checkNotModified(etag, fecha);
+    }
+
+    private <B extends ResponseEntity.HeadersBuilder<B>> B cabeceras(B respuesta, ContenidoImagen contenido, String etag) {
+        CacheControl cacheControl = CacheControl.maxAge(maxAge);
+        respuesta.cacheControl(publica ? cacheControl.cachePublic() : cacheControl.cachePrivate());
+        if (etag != null) {
+            respuesta.eTag(etag);
+        }
+        if (contenido.getFecha() != null) {
+            respuesta.lastModified(contenido.getFecha());
+        }
+        return respuesta.header(HttpHeaders.ACCEPT_RANGES, "bytes");
+    }
+
+    // Rango pedido, o null si no hay cabecera Range valida con un solo rango o si If-Range no coincide
+    // con la version actual (en ese caso se devuelve la imagen completa)
+    private static HttpRange rango(HttpHeaders headers, ContenidoImagen contenido, String etag) {
+        List<HttpRange> rangos;
+        try {
+            rangos = headers.getRange();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (rangos.size() != 1) {
+            return null;
+        }
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(etag)) {
+                    return null;
+                }
+            } else {
+                try {
+                    long fecha = headers.getFirstDate(HttpHeaders.IF_RANGE);
+                    if (contenido.getFecha() == null || contenido.getFecha().getEpochSecond() != fecha / 1000) {
+                        return null;
+                    }
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return rangos.get(0);
+    }
+
+    private MediaType tipoDerivadas() {
+        return "png".equals(imagenService.getFormatoDerivadas()) ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+    }
+
     @GetMapping("/imagen/info/{id}")
-    public Imagen getImagen(@PathVariable("id") Long id){
-        return imagenService.getImagen(id);
+    public ResponseEntity<ImagenResumen> getImagen(@PathVariable("id") Long id){
+        return ResponseEntity.of(imagenService.getResumenImagen(id));
     }
 
     @GetMapping("/imagen/predict/{id}")
@@ -43,8 +256,15 @@ public class ImagenController {
         try{
             return ResponseEntity.ok("{\"prediction\": \""+imagenService.getNewPrediccion(id)+"\"}");
         }
+        catch(ModeloNoDisponibleException e){
+            log.warn("Modelo de prediccion no disponible: {}", e.getCause().getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Modelo de prediccion no disponible");
+        }
+        catch(ImagenNoEncontradaException e){
+            return ResponseEntity.notFound().build();
+        }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("Error al realizar la prediccion", e);
             return ResponseEntity.internalServerError().body("Error al realizar la prediccion"+e.getMessage());
         }
         
@@ -57,9 +277,48 @@ public class ImagenController {
 		return ResponseEntity.ok(uploadImage);
 	}
 
+    // Alta masiva desde un zip con entradas <dni del paciente>/<carpeta>/<nombre>, el formato de /imagen/exportar.
+    // El zip es el cuerpo de la peticion (Content-Type: application/zip) y se lee en streaming, sin limite de tamaño.
+    @PostMapping(value = "/imagen/importar", consumes = {"application/zip"})
+    public ResponseEntity<?> importarImagenes(InputStream zip) {
+        return RespuestaImportacion.importar("Error al importar las imagenes", () -> cargaMasivaService.importarImagenes(zip));
+    }
+
+    // El mismo zip como parte "archivo" de un formulario, sujeto a spring.servlet.multipart.max-file-size
+    @PostMapping(value = "/imagen/importar", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    public ResponseEntity<?> importarImagenes(@RequestPart("archivo") MultipartFile archivo) {
+        try (InputStream zip = archivo.getInputStream()) {
+            return importarImagenes(zip);
+        }
+        catch(IOException e){
+            log.error("Error al importar las imagenes", e);
+            return ResponseEntity.internalServerError().body("Error al importar las imagenes");
+        }
+    }
+
+    @GetMapping(value = "/imagen/exportar", produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> exportarImagenes() {
+        StreamingResponseBody imagenes = out -> cargaMasivaService.exportarImagenes(out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.valueOf("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"imagenes.zip\"")
+            .body(imagenes);
+    }
+
+    // Paginado por cursor: ?after=<id de la ultima imagen recibida>&limit=<n>; sin ninguno de los dos, el listado completo
     @GetMapping("/imagen/paciente/{id}")
-    public List<Imagen> getImagenes (@PathVariable("id") Long id) {
-        return imagenService.getImagenesPaciente(id);
+    public ResponseEntity<List<ImagenResumen>> getImagenes (@PathVariable("id") Long id,
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit", required = false) Integer limit) {
+        Limit limite = paginacion.limite(after, limit);
+        return paginacion.respuesta(imagenService.getResumenImagenesPaciente(id, paginacion.desde(after), limite), limite, ImagenResumen::getId);
+    }
+
+    // Listado completo en NDJSON (Accept: application/x-ndjson), escrito a medida que se lee de la base de datos
+    @GetMapping(value = "/imagen/paciente/{id}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getImagenesNdjson(@PathVariable("id") Long id) {
+        StreamingResponseBody imagenes = out -> imagenService.recorrerResumenImagenesPaciente(id, ndjsonWriter.escritor(out));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(imagenes);
     }
 
     @DeleteMapping("/imagen/{id}")
@@ -69,7 +328,7 @@ public class ImagenController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("Error al eliminar la imagen", e);
             return ResponseEntity.internalServerError().body("Error al eliminar la imagen");
         }
     }
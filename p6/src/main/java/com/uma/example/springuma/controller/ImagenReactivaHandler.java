@@ -0,0 +1,154 @@
+package com.uma.example.springuma.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.uma.example.springuma.model.ContenidoImagen;
+import com.uma.example.springuma.model.ImagenNoEncontradaException;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.ModeloNoDisponibleException;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PacienteService;
+import com.uma.example.springuma.model.PrediccionCacheService;
+import com.uma.example.springuma.model.PrediccionService;
+import com.uma.example.springuma.utils.DataBufferInputStream;
+import com.uma.example.springuma.utils.ImageUtils;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Variante no bloqueante de la descarga, subida y prediccion de imagenes, servida por ServidorReactivo.
+// Los hilos del servidor nunca esperan: el acceso a la base de datos y a los almacenes va a boundedElastic,
+// las descargas sin comprimir se leen del fichero de forma asincrona y la prediccion usa WebClient.
+@Component
+@ConditionalOnProperty(name = "reactivo.enabled", havingValue = "true")
+public class ImagenReactivaHandler {
+
+    private static final DataBufferFactory BUFFERS = DefaultDataBufferFactory.sharedInstance;
+    private static final Executor BLOQUEANTE = tarea -> Schedulers.boundedElastic().schedule(tarea);
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private PacienteService pacienteService;
+
+    @Autowired
+    private PrediccionCacheService prediccionCacheService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // Peticiones de la API reactiva en curso; las de Tomcat las mide Spring Boot (http.server.requests.active)
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    @PostConstruct
+    public void iniciar() {
+        Gauge.builder("imagen.reactiva.en.curso", enCurso, AtomicInteger::get)
+                .description("Peticiones en curso en el servidor reactivo")
+                .register(registry);
+    }
+
+    public RouterFunction<ServerResponse> rutas() {
+        return RouterFunctions.route()
+                .GET("/imagen/predict/{id}", this::predecir)
+                .GET("/imagen/{id}", this::descargar)
+                .POST("/imagen/paciente/{id}", this::subir)
+                .filter((request, siguiente) -> Mono.defer(() -> {
+                    enCurso.incrementAndGet();
+                    return siguiente.handle(request).doFinally(senal -> enCurso.decrementAndGet());
+                }))
+                .build();
+    }
+
+    // El cuerpo se envia a medida que el cliente lo consume: si va lento se deja de leer (backpressure)
+    public Mono<ServerResponse> descargar(ServerRequest request) {
+        long id = Long.parseLong(request.pathVariable("id"));
+        return Mono.fromCallable(() -> imagenService.getContenido(id))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(contenido -> contenido.isEmpty()
+                        ? ServerResponse.notFound().build()
+                        : responderContenido(contenido.get()));
+    }
+
+    // Subida con el fichero como cuerpo (POST /imagen/paciente/{id}?nombre=...). El cuerpo se comprime hacia
+    // el almacen segun llega, pidiendo al socket un buffer cada vez que el almacen ha escrito el anterior.
+    public Mono<ServerResponse> subir(ServerRequest request) {
+        long pacienteId = Long.parseLong(request.pathVariable("id"));
+        String nombre = request.queryParam("nombre").orElse("imagen");
+        String contentType = request.headers().contentType().map(MediaType::toString).orElse(null);
+        Flux<DataBuffer> cuerpo = request.bodyToFlux(DataBuffer.class);
+        return Mono.fromCallable(() -> {
+                    Paciente paciente = pacienteService.getPaciente(pacienteId);
+                    try (InputStream in = new DataBufferInputStream(cuerpo)) {
+                        return imagenService.guardarImagen(nombre, contentType, in, paciente);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(imagen -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("id", imagen.getId(), "response", "file uploaded successfully : " + nombre)))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error al subir la imagen"));
+    }
+
+    public Mono<ServerResponse> predecir(ServerRequest request) {
+        long id = Long.parseLong(request.pathVariable("id"));
+        return prediccionCacheService.predecirReactivo(id)
+                .map(PrediccionService::describir)
+                .flatMap(prediccion -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("prediction", prediccion)))
+                .onErrorResume(ModeloNoDisponibleException.class,
+                        e -> ServerResponse.status(503).bodyValue("Modelo de prediccion no disponible"))
+                .onErrorResume(ImagenNoEncontradaException.class, e -> ServerResponse.notFound().build())
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error al realizar la prediccion" + e.getMessage()));
+    }
+
+    private Mono<ServerResponse> responderContenido(ContenidoImagen contenido) {
+        ServerResponse.BodyBuilder respuesta = ServerResponse.ok()
+                .contentType(imagenService.getTipo(contenido))
+                .header(HttpHeaders.ETAG, "\"" + contenido.getHash() + "\"");
+        if (contenido.getTamano() != null) {
+            respuesta.contentLength(contenido.getTamano());
+        }
+        Optional<Path> fichero = imagenService.getFichero(contenido);
+        if (fichero.isPresent()) {
+            // Sin compresion: Reactor Netty envia el fichero con zero-copy (ZeroCopyHttpOutputMessage); si no puede,
+            // ResourceHttpMessageWriter lo lee de forma asincrona, sin hilo bloqueado
+            return respuesta.body(BodyInserters.fromResource(new FileSystemResource(fichero.get())));
+        }
+        // Con codec o en BLOB: se descomprime en boundedElastic, que solo escribe cuando hay demanda
+        Flux<DataBuffer> cuerpo = Flux.from(DataBufferUtils.outputStreamPublisher(out -> {
+            try {
+                imagenService.downloadImage(contenido, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, BUFFERS, BLOQUEANTE, ImageUtils.BUFFER_SIZE));
+        return respuesta.body(BodyInserters.fromDataBuffers(cuerpo));
+    }
+}
@@ -1,9 +1,13 @@
 package com.uma.example.springuma.controller;
 
+import java.net.URI;
 import java.util.List;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,36 +15,68 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.InformeResumen;
 import com.uma.example.springuma.model.InformeService;
+import com.uma.example.springuma.model.PrediccionJob;
+import com.uma.example.springuma.model.PrediccionService;
+import com.uma.example.springuma.utils.NdjsonWriter;
+import com.uma.example.springuma.utils.Paginacion;
 
 @RestController
 public class InformeController {
+
+    private static final Logger log = LoggerFactory.getLogger(InformeController.class);
     
     @Autowired
     private InformeService informeService;
+
+    @Autowired
+    private PrediccionService prediccionService;
+
+    @Autowired
+    private Paginacion paginacion;
+
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
     
     @GetMapping("/informe/{id}")
     public Informe getInforme(@PathVariable("id") Long id) {
         return informeService.getInforme(id);
     }
 
+    // Paginado por cursor: ?after=<id del ultimo informe recibido>&limit=<n>; sin ninguno de los dos, el listado completo
     @GetMapping("informe/imagen/{id}")
-    public List<Informe> getInformes(@PathVariable("id") Long id) {
-        return informeService.getInformesImagen(id);
+    public ResponseEntity<List<InformeResumen>> getInformes(@PathVariable("id") Long id,
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit", required = false) Integer limit) {
+        Limit limite = paginacion.limite(after, limit);
+        return paginacion.respuesta(informeService.getResumenInformesImagen(id, paginacion.desde(after), limite), limite, InformeResumen::getId);
+    }
+
+    // Listado completo en NDJSON (Accept: application/x-ndjson), escrito a medida que se lee de la base de datos
+    @GetMapping(value = "informe/imagen/{id}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getInformesNdjson(@PathVariable("id") Long id) {
+        StreamingResponseBody informes = out -> informeService.recorrerResumenInformesImagen(id, ndjsonWriter.escritor(out));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(informes);
     }
 
     
     @PostMapping(value = "/informe",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
 	public ResponseEntity<?> saveInforme(@RequestBody Informe informe) {
         try{
-            informeService.addInforme(informe);
-            return ResponseEntity.status(201).build();
+            Informe guardado = informeService.addInforme(informe);
+            // La prediccion se calcula en segundo plano: Location apunta al estado del trabajo
+            return ResponseEntity.status(201)
+                .location(URI.create("/prediccion/" + prediccionService.getJobInforme(guardado.getId()).map(PrediccionJob::getId).orElse("")))
+                .build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("El informe ya existe", e);
             return ResponseEntity.internalServerError().body("El informe ya existe");
         }
 	}
@@ -52,7 +88,7 @@ public class InformeController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("Error al eliminar el informe", e);
             return ResponseEntity.internalServerError().body("Error al eliminar el informe");
         }
     }
@@ -1,6 +1,9 @@
 package com.uma.example.springuma.controller;
 
+import java.io.InputStream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -11,16 +14,31 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.uma.example.springuma.model.CargaMasivaService;
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.MedicoService;
+import com.uma.example.springuma.utils.NdjsonWriter;
 
 @RestController
 public class MedicoController {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicoController.class);
+
+    // Logger de los borrados de medicos y pacientes, con su propio limite en logback-spring.xml
+    public static final String LOGGER_BORRADOS = "com.uma.example.springuma.borrados";
+    private static final Logger logBorrados = LoggerFactory.getLogger(LOGGER_BORRADOS);
     
     @Autowired
     private MedicoService medicoService;
 
+    @Autowired
+    private CargaMasivaService cargaMasivaService;
+
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
+
     @GetMapping("/medico/{id}")
     public Medico getMedico(@PathVariable("id") Long id){
         return medicoService.getMedico(id);
@@ -44,7 +62,7 @@ public class MedicoController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("Error al actualizar el medico", e);
             return ResponseEntity.internalServerError().body("Error al actualizar el medico");
         }
     }
@@ -53,9 +71,9 @@ public class MedicoController {
     public ResponseEntity<?> deleteMedico(@PathVariable("id") Long id) {
         try{
             Medico medico = medicoService.getMedico(id);
-            System.out.println(medico);
             if (medico != null) {
                 medicoService.removeMedicoID(id);
+                logBorrados.atInfo().addKeyValue("medicoId", id).log("Medico eliminado");
                 return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.internalServerError().build();
@@ -63,11 +81,23 @@ public class MedicoController {
             
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("Error al eliminar el medico", e);
             return ResponseEntity.internalServerError().body("Error al eliminar el medico");
         }
     }
 
+    // Alta masiva: un medico por linea en NDJSON, el mismo formato que /medico/exportar
+    @PostMapping(value = "/medico/importar", consumes = {MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importarMedicos(InputStream medicos) {
+        return RespuestaImportacion.importar("Error al importar los medicos", () -> cargaMasivaService.importarMedicos(medicos));
+    }
+
+    @GetMapping(value = "/medico/exportar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportarMedicos() {
+        StreamingResponseBody medicos = out -> cargaMasivaService.recorrerMedicos(ndjsonWriter.escritor(out));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(medicos);
+    }
+
     // Buscar un medico por su dni
     @GetMapping("/medico/dni/{dni}")
     public ResponseEntity<Medico> getMedicoByDni(@PathVariable("dni") String dni) {
@@ -78,6 +108,4 @@ public class MedicoController {
             return ResponseEntity.notFound().build();
         }
     }
-
-
 }
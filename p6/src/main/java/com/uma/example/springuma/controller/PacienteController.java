@@ -1,8 +1,12 @@
 package com.uma.example.springuma.controller;
 
+import java.io.InputStream;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,25 +15,65 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.uma.example.springuma.model.CargaMasivaService;
 import com.uma.example.springuma.model.Paciente;
 import com.uma.example.springuma.model.PacienteService;
+import com.uma.example.springuma.utils.NdjsonWriter;
+import com.uma.example.springuma.utils.Paginacion;
 
 @RestController
 public class PacienteController {
+
+    private static final Logger log = LoggerFactory.getLogger(PacienteController.class);
+    private static final Logger logBorrados = LoggerFactory.getLogger(MedicoController.LOGGER_BORRADOS);
     
     @Autowired
     private PacienteService pacienteService;
+
+    @Autowired
+    private CargaMasivaService cargaMasivaService;
+
+    @Autowired
+    private Paginacion paginacion;
+
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
     
     @GetMapping("/paciente/{id}")
     public Paciente getPaciente(@PathVariable("id") Long id) {
         return pacienteService.getPaciente(id);
     }
 
+    // Paginado por cursor: ?after=<id del ultimo paciente recibido>&limit=<n>; sin ninguno de los dos, el listado completo
     @GetMapping("/paciente/medico/{id}")
-    public List<Paciente> getPacientes(@PathVariable("id") Long id) {
-        return pacienteService.getPacientesMedico(id);
+    public ResponseEntity<List<Paciente>> getPacientes(@PathVariable("id") Long id,
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit", required = false) Integer limit) {
+        Limit limite = paginacion.limite(after, limit);
+        return paginacion.respuesta(pacienteService.getPacientesMedico(id, paginacion.desde(after), limite), limite, Paciente::getId);
+    }
+
+    // Listado completo en NDJSON (Accept: application/x-ndjson), escrito a medida que se lee de la base de datos
+    @GetMapping(value = "/paciente/medico/{id}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getPacientesNdjson(@PathVariable("id") Long id) {
+        StreamingResponseBody pacientes = out -> pacienteService.recorrerPacientesMedico(id, ndjsonWriter.escritor(out));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(pacientes);
+    }
+
+    // Alta masiva: un paciente por linea en NDJSON; el medico se identifica por su dni
+    @PostMapping(value = "/paciente/importar", consumes = {MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importarPacientes(InputStream pacientes) {
+        return RespuestaImportacion.importar("Error al importar los pacientes", () -> cargaMasivaService.importarPacientes(pacientes));
+    }
+
+    @GetMapping(value = "/paciente/exportar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportarPacientes() {
+        StreamingResponseBody pacientes = out -> cargaMasivaService.recorrerPacientes(ndjsonWriter.escritor(out));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(pacientes);
     }
 
     @PostMapping(value = "/paciente",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
@@ -50,7 +94,7 @@ public class PacienteController {
             return ResponseEntity.noContent().build();
         }
         catch(Exception e){
-            e.printStackTrace();
+            log.error("Error al actualizar el paciente", e);
             return ResponseEntity.internalServerError().body("Error al actualizar el paciente ");
         }
     }
@@ -59,15 +103,16 @@ public class PacienteController {
     public ResponseEntity<?> deleteCuenta(@PathVariable("id") Long id) {
         try{
             Paciente paciente = pacienteService.getPaciente(id);
-            System.out.println(paciente);
             if (paciente != null) {
                 pacienteService.removePaciente(paciente);
+                logBorrados.atInfo().addKeyValue("pacienteId", id).log("Paciente eliminado");
                 return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.internalServerError().build();
             }
         }
         catch(Exception e){
+            log.error("Error al eliminar el paciente", e);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -0,0 +1,28 @@
+package com.uma.example.springuma.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.uma.example.springuma.model.PrediccionJob;
+import com.uma.example.springuma.model.PrediccionService;
+
+@RestController
+public class PrediccionController {
+
+    @Autowired
+    private PrediccionService prediccionService;
+
+    // Estado de una prediccion asincrona (PENDIENTE, EN_CURSO, COMPLETADA o ERROR)
+    @GetMapping("/prediccion/{id}")
+    public ResponseEntity<PrediccionJob> getPrediccion(@PathVariable("id") String id) {
+        return ResponseEntity.of(prediccionService.getJob(id));
+    }
+
+    @GetMapping("/informe/{id}/prediccion")
+    public ResponseEntity<PrediccionJob> getPrediccionInforme(@PathVariable("id") Long id) {
+        return ResponseEntity.of(prediccionService.getJobInforme(id));
+    }
+}
@@ -0,0 +1,45 @@
+package com.uma.example.springuma.controller;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+
+import com.uma.example.springuma.model.ImportacionException;
+
+// Respuesta comun de las altas masivas (/medico/importar, /paciente/importar, /imagen/importar):
+// 200 con las filas importadas; 400 si los datos son erroneos y 500 si no, con donde ha fallado y cuantas
+// filas habian quedado ya importadas; 500 con "mensaje" ante cualquier otro error
+final class RespuestaImportacion {
+
+    private static final Logger log = LoggerFactory.getLogger(RespuestaImportacion.class);
+
+    private RespuestaImportacion() {
+    }
+
+    static ResponseEntity<?> importar(String mensaje, Importacion importacion) {
+        try{
+            return ResponseEntity.ok(Map.of("importados", importacion.importar()));
+        }
+        catch(ImportacionException e){
+            Map<String, Object> respuesta = Map.of("error", mensaje + " en la " + e.getUbicacion() + ": " + e.getMessage(),
+                    "importados", e.getConfirmadas());
+            if (e.isDatosErroneos()) {
+                log.warn("{} en la {}: {}", mensaje, e.getUbicacion(), e.getMessage());
+                return ResponseEntity.badRequest().body(respuesta);
+            }
+            log.error(mensaje + " en la " + e.getUbicacion(), e);
+            return ResponseEntity.internalServerError().body(respuesta);
+        }
+        catch(Exception e){
+            log.error(mensaje, e);
+            return ResponseEntity.internalServerError().body(mensaje);
+        }
+    }
+
+    // Devuelve las filas importadas
+    interface Importacion {
+        long importar() throws Exception;
+    }
+}
@@ -0,0 +1,55 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Contenido guardado en la columna file_content de la propia tabla imagen (almacen original de la aplicacion)
+@Component
+public class BlobImageStore implements ImageStore {
+
+    public static final String NOMBRE = "blob";
+
+    @Autowired
+    private RepositoryImagenContenido repositoryImagenContenido;
+
+    @Override
+    public String getNombre() {
+        return NOMBRE;
+    }
+
+    @Override
+    public ContenidoImagen guardar(long id, InputStream in, ImageCodec codec) throws IOException {
+        MessageDigest digest = ImageUtils.sha256();
+        long tamano = repositoryImagenContenido.guardarContenido(id, new DigestInputStream(in, digest), codec);
+        return new ContenidoImagen(id, NOMBRE, codec.getNombre(), ImageUtils.toHex(digest.digest()), tamano);
+    }
+
+    @Override
+    public boolean escribeEnFila() {
+        return true;
+    }
+
+    @Override
+    public void copiar(ContenidoImagen contenido, OutputStream out) throws IOException {
+        repositoryImagenContenido.copiarContenido(contenido.getId(), out);
+    }
+
+    @Override
+    public void copiar(ContenidoImagen contenido, OutputStream out, long desde, long cantidad) throws IOException {
+        repositoryImagenContenido.copiarContenido(contenido.getId(), out, desde, cantidad);
+    }
+
+    @Override
+    public void borrar(ContenidoImagen contenido) {
+        // El BLOB se borra junto con la fila
+    }
+}
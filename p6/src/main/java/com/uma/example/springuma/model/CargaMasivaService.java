@@ -0,0 +1,286 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.attribute.FileTime;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageCodecSelector;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Importacion y exportacion masiva de medicos, pacientes (NDJSON) e imagenes (zip) para dar de alta hospitales.
+// Las filas se insertan por lotes JDBC (ids de secuencia reservados de 50 en 50) en transacciones de
+// importacion.transaccion filas, vaciando el contexto de persistencia cada importacion.lote filas.
+// Los ids de origen no se conservan: las relaciones se resuelven por DNI.
+// Si una fila falla se lanza ImportacionException con su linea (o entrada del zip) y las filas ya confirmadas.
+@Service
+public class CargaMasivaService {
+
+    // Directorio del zip para las imagenes sin paciente
+    public static final String SIN_PACIENTE = "_";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private ImagenContenidoService imagenContenidoService;
+
+    @Autowired
+    private ImageCodecSelector imageCodecSelector;
+
+    // Filas por lote JDBC y entre cada flush/clear
+    @Value("${importacion.lote:100}")
+    private int lote;
+
+    // Filas por transaccion: si la importacion falla, lo ya confirmado se queda
+    @Value("${importacion.transaccion:5000}")
+    private int filasPorTransaccion;
+
+    // Importa medicos en NDJSON (un medico por linea, el formato de exportarMedicos). Devuelve cuantos se han importado.
+    public long importarMedicos(InputStream in) throws IOException, ImportacionException {
+        try (MappingIterator<Medico> medicos = objectMapper.readerFor(Medico.class).readValues(in)) {
+            return porLotes(siguiente(medicos, medico -> {
+                medico.setId(0);
+                entityManager.persist(medico);
+            }), () -> linea(medicos));
+        }
+    }
+
+    // Importa pacientes en NDJSON. El medico de cada paciente se busca por su dni (o por id si no lo trae).
+    public long importarPacientes(InputStream in) throws IOException, ImportacionException {
+        Map<String, Long> medicos = new HashMap<>();
+        try (MappingIterator<Paciente> pacientes = objectMapper.readerFor(Paciente.class).readValues(in)) {
+            return porLotes(siguiente(pacientes, paciente -> {
+                paciente.setId(0);
+                if (paciente.getMedico() != null) {
+                    paciente.setMedico(entityManager.getReference(Medico.class, idMedico(paciente.getMedico(), medicos)));
+                }
+                entityManager.persist(paciente);
+            }), () -> linea(pacientes));
+        }
+    }
+
+    // Importa un zip de imagenes con entradas <dni del paciente>/<cualquier cosa>/<nombre> (el formato de exportarImagenes).
+    // Cada imagen se comprime en streaming desde el zip al almacen, sin cargarla entera en memoria.
+    // Si el almacen no escribe en la fila (filesystem), el contenido se guarda antes del INSERT y la fila
+    // entra en el lote JDBC con su hash y tamaño; con el almacen blob cada fila se inserta al momento.
+    public long importarImagenes(InputStream in) throws IOException, ImportacionException {
+        Map<String, Long> pacientes = new HashMap<>();
+        ImageStore store = imagenContenidoService.getStorePorDefecto();
+        ZipInputStream zip = new ZipInputStream(in);
+        String[] actual = {null};
+        return porLotes(() -> {
+            ZipEntry entrada = zip.getNextEntry();
+            while (entrada != null && entrada.isDirectory()) {
+                entrada = zip.getNextEntry();
+            }
+            if (entrada == null) {
+                return false;
+            }
+            actual[0] = entrada.getName();
+            String[] partes = entrada.getName().split("/");
+            if (partes.length < 2) {
+                throw new IllegalArgumentException("Entrada sin paciente: " + entrada.getName());
+            }
+            String nombre = partes[partes.length - 1];
+            Imagen imagen = new Imagen();
+            imagen.setNombre(nombre);
+            if (!SIN_PACIENTE.equals(partes[0])) {
+                imagen.setPaciente(entityManager.getReference(Paciente.class, idPaciente(partes[0], pacientes)));
+            }
+            Calendar fecha = Calendar.getInstance();
+            if (entrada.getLastModifiedTime() != null) {
+                fecha.setTimeInMillis(entrada.getLastModifiedTime().toMillis());
+            }
+            imagen.setFecha(fecha);
+            ImageCodec codec = imageCodecSelector.paraContentType(null, nombre);
+            imagen.setCodec(codec.getNombre());
+            imagen.setAlmacen(store.getNombre());
+            entityManager.persist(imagen);
+            if (store.escribeEnFila()) {
+                // La fila tiene que existir antes de guardar su contenido
+                entityManager.flush();
+                imagenContenidoService.guardar(imagen.getId(), zip, codec);
+            } else {
+                imagenContenidoService.guardarAntesDeInsertar(imagen, zip, codec);
+            }
+            return true;
+        }, () -> "entrada " + actual[0]);
+    }
+
+    @Transactional(readOnly = true)
+    public void recorrerMedicos(Consumer<Medico> consumidor) {
+        try (Stream<Medico> medicos = repositoryMedico.streamTodos()) {
+            medicos.forEach(medico -> {
+                consumidor.accept(medico);
+                entityManager.detach(medico);
+            });
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void recorrerPacientes(Consumer<Paciente> consumidor) {
+        try (Stream<Paciente> pacientes = repositoryPaciente.streamTodos()) {
+            pacientes.forEach(paciente -> {
+                consumidor.accept(paciente);
+                entityManager.detach(paciente);
+            });
+        }
+    }
+
+    // Escribe todas las imagenes en un zip sobre "out", una entrada <dni>/<id>/<nombre> por imagen,
+    // leyendo cada contenido del almacen a medida que se escribe
+    @Transactional(readOnly = true)
+    public void exportarImagenes(OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // La mayoria ya vienen comprimidas (PNG, JPEG): comprimir mas apenas reduce y cuesta CPU
+        zip.setLevel(Deflater.BEST_SPEED);
+        try (Stream<ImagenResumen> imagenes = repositoryImagen.streamResumenTodas()) {
+            Iterator<ImagenResumen> it = imagenes.iterator();
+            while (it.hasNext()) {
+                ImagenResumen imagen = it.next();
+                Optional<ContenidoImagen> contenido = imagenContenidoService.buscar(imagen.getId());
+                if (contenido.isEmpty()) {
+                    continue;
+                }
+                String paciente = imagen.getPaciente() == null ? SIN_PACIENTE : imagen.getPaciente().getDni();
+                String nombre = imagen.getNombre() == null ? "imagen" : imagen.getNombre().replace('/', '_');
+                ZipEntry entrada = new ZipEntry(paciente + "/" + imagen.getId() + "/" + nombre);
+                if (imagen.getFecha() != null) {
+                    entrada.setLastModifiedTime(FileTime.fromMillis(imagen.getFecha().getTimeInMillis()));
+                }
+                zip.putNextEntry(entrada);
+                imagenContenidoService.copiar(contenido.get(), zip);
+                zip.closeEntry();
+            }
+        }
+        zip.finish();
+    }
+
+    // Importa filas hasta que "fila" devuelve false, en transacciones de filasPorTransaccion filas.
+    // "ubicacion" describe la fila en curso para el error si falla.
+    private long porLotes(Fila fila, Supplier<String> ubicacion) throws ImportacionException {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        long total = 0;
+        try {
+            boolean quedan = true;
+            while (quedan) {
+                int[] importadas = {0};
+                quedan = Boolean.TRUE.equals(transaccion.execute(status -> {
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(lote);
+                    try {
+                        while (importadas[0] < filasPorTransaccion) {
+                            if (!fila.importar()) {
+                                return false;
+                            }
+                            if (++importadas[0] % lote == 0) {
+                                entityManager.flush();
+                                entityManager.clear();
+                            }
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                total += importadas[0];
+            }
+        } catch (RuntimeException e) {
+            Throwable causa = e instanceof UncheckedIOException ? e.getCause() : e;
+            throw new ImportacionException(causa.getMessage(), ubicacion.get(), total, datosErroneos(e), causa);
+        }
+        return total;
+    }
+
+    // Errores de los datos importados (dni desconocido, JSON o zip mal formado) y no del servidor
+    private static boolean datosErroneos(RuntimeException e) {
+        return e instanceof IllegalArgumentException || e instanceof RuntimeJsonMappingException
+                || e.getCause() instanceof JsonProcessingException || e.getCause() instanceof ZipException;
+    }
+
+    private static String linea(MappingIterator<?> filas) {
+        return "linea " + filas.getCurrentLocation().getLineNr();
+    }
+
+    private static <T> Fila siguiente(Iterator<T> filas, Consumer<T> guardar) {
+        return () -> {
+            if (!filas.hasNext()) {
+                return false;
+            }
+            guardar.accept(filas.next());
+            return true;
+        };
+    }
+
+    private long idMedico(Medico medico, Map<String, Long> medicos) {
+        if (medico.getDni() == null) {
+            return medico.getId();
+        }
+        return medicos.computeIfAbsent(medico.getDni(), dni -> {
+            Medico encontrado = repositoryMedico.getMedicoByDni(dni);
+            if (encontrado == null) {
+                throw new IllegalArgumentException("Medico desconocido: " + dni);
+            }
+            return encontrado.getId();
+        });
+    }
+
+    private long idPaciente(String dni, Map<String, Long> pacientes) {
+        return pacientes.computeIfAbsent(dni, d -> {
+            Paciente encontrado = repositoryPaciente.findByDni(d);
+            if (encontrado == null) {
+                throw new IllegalArgumentException("Paciente desconocido: " + d);
+            }
+            return encontrado.getId();
+        });
+    }
+
+    private interface Fila {
+        // Importa la siguiente fila; devuelve false si no quedan
+        boolean importar() throws IOException;
+    }
+}
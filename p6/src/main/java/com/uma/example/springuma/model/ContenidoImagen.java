@@ -0,0 +1,63 @@
+package com.uma.example.springuma.model;
+
+import java.time.Instant;
+
+// Datos necesarios para localizar y leer el contenido de una imagen sin cargar la entidad Imagen
+public class ContenidoImagen {
+
+    private final long id;
+    private final String almacen;
+    private final String codec;
+    private final String hash;
+    private final Long tamano;
+    private final Instant fecha;
+    private final String nombre;
+
+    public ContenidoImagen(long id, String almacen, String codec, String hash, Long tamano) {
+        this(id, almacen, codec, hash, tamano, null);
+    }
+
+    public ContenidoImagen(long id, String almacen, String codec, String hash, Long tamano, Instant fecha) {
+        this(id, almacen, codec, hash, tamano, fecha, null);
+    }
+
+    public ContenidoImagen(long id, String almacen, String codec, String hash, Long tamano, Instant fecha, String nombre) {
+        this.id = id;
+        this.almacen = almacen;
+        this.codec = codec;
+        this.hash = hash;
+        this.tamano = tamano;
+        this.fecha = fecha;
+        this.nombre = nombre;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getAlmacen() {
+        return almacen;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public Long getTamano() {
+        return tamano;
+    }
+
+    // Fecha de subida de la imagen (Last-Modified de las descargas)
+    public Instant getFecha() {
+        return fecha;
+    }
+
+    // Nombre del fichero subido, del que sale el Content-Type de las descargas
+    public String getNombre() {
+        return nombre;
+    }
+}
@@ -0,0 +1,39 @@
+package com.uma.example.springuma.model;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Invalidacion de la cache de segundo nivel tras los borrados. Las actualizaciones hechas con Hibernate ya
+// mantienen la cache al dia, pero los borrados en cascada (ON DELETE CASCADE) los hace la base de datos:
+// Hibernate no se entera de las filas dependientes que desaparecen ni de que cambian sus consultas.
+@Service
+public class EntidadCacheService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Se llama despues de borrar un medico: se borran en cascada sus pacientes, imagenes e informes
+    public void medicoBorrado() {
+        invalidar(Paciente.class, Informe.class);
+    }
+
+    // Se llama despues de borrar un paciente o una imagen: se borran en cascada sus informes
+    public void pacienteBorrado() {
+        invalidar(Informe.class);
+    }
+
+    public void imagenBorrada() {
+        invalidar(Informe.class);
+    }
+
+    private void invalidar(Class<?>... dependientes) {
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        for (Class<?> entidad : dependientes) {
+            cache.evictEntityData(entidad);
+        }
+        cache.evictQueryRegions();
+    }
+}
@@ -0,0 +1,17 @@
+package com.uma.example.springuma.model;
+
+// Error devuelto por el modelo de prediccion. Es transitorio si puede salir bien al repetir la llamada
+// (modelo cargando, 429, 5xx o fallo de red); una respuesta 4xx o ilegible no lo es y no se reintenta.
+public class ErrorModeloException extends Exception {
+
+    private final boolean transitorio;
+
+    public ErrorModeloException(String message, boolean transitorio, Throwable cause) {
+        super(message, cause);
+        this.transitorio = transitorio;
+    }
+
+    public boolean isTransitorio() {
+        return transitorio;
+    }
+}
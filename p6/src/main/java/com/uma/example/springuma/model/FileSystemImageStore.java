@@ -0,0 +1,160 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageUtils;
+import com.uma.example.springuma.utils.MetricasImagen;
+import com.uma.example.springuma.utils.StoreCodec;
+
+// Contenido guardado en disco, direccionado por su hash: <ruta>/<2 primeros caracteres>/<sha256>.<codec>.
+// Dos subidas con el mismo contenido comparten fichero. Hasta que termina la transaccion de la subida se guarda
+// un respaldo (enlace duro al mismo fichero) en <ruta>/tmp/respaldo-<id>: si entretanto se borra otra imagen con el
+// mismo contenido y se quita el fichero, al confirmar se vuelve a poner desde el respaldo.
+@Component
+public class FileSystemImageStore implements ImageStore {
+
+    public static final String NOMBRE = "filesystem";
+
+    @Value("${imagen.store.ruta:./imagenes}")
+    private Path raiz;
+
+    @Autowired
+    private MetricasImagen metricasImagen;
+
+    @Override
+    public String getNombre() {
+        return NOMBRE;
+    }
+
+    @Override
+    public ContenidoImagen guardar(long id, InputStream in, ImageCodec codec) throws IOException {
+        // Hasta terminar de leer no se conoce el hash: se escribe en un temporal y despues se mueve
+        Path temporales = Files.createDirectories(raiz.resolve("tmp"));
+        Path temporal = Files.createTempFile(temporales, "subida-", ".tmp");
+        try {
+            MessageDigest digest = ImageUtils.sha256();
+            long tamano = metricasImagen.comprimir(NOMBRE, new DigestInputStream(in, digest), Files.newOutputStream(temporal), codec);
+            String hash = ImageUtils.toHex(digest.digest());
+            Path respaldo = respaldo(id);
+            Files.move(temporal, respaldo, StandardCopyOption.REPLACE_EXISTING);
+            enlazar(respaldo, ruta(hash, codec.getNombre()));
+            return new ContenidoImagen(id, NOMBRE, codec.getNombre(), hash, tamano);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @Override
+    public void copiar(ContenidoImagen contenido, OutputStream out) throws IOException {
+        Path fichero = ruta(contenido.getHash(), contenido.getCodec());
+        if (!StoreCodec.NOMBRE.equals(contenido.getCodec())) {
+            metricasImagen.descomprimir(NOMBRE, Files.newInputStream(fichero), out, ImageCodec.porNombre(contenido.getCodec()));
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            transferir(canal, 0, canal.size(), Channels.newChannel(out));
+            metricasImagen.lectura(NOMBRE, canal.size());
+        }
+    }
+
+    // Sin compresion el rango se lee directamente de su posicion en el fichero
+    @Override
+    public void copiar(ContenidoImagen contenido, OutputStream out, long desde, long cantidad) throws IOException {
+        Path fichero = ruta(contenido.getHash(), contenido.getCodec());
+        if (!StoreCodec.NOMBRE.equals(contenido.getCodec())) {
+            metricasImagen.descomprimir(NOMBRE, Files.newInputStream(fichero), out, ImageCodec.porNombre(contenido.getCodec()),
+                    desde, cantidad);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            transferir(canal, desde, Math.min(cantidad, canal.size() - desde), Channels.newChannel(out));
+        }
+    }
+
+    @Override
+    public Optional<Path> fichero(ContenidoImagen contenido) {
+        if (!StoreCodec.NOMBRE.equals(contenido.getCodec())) {
+            return Optional.empty();
+        }
+        return Optional.of(ruta(contenido.getHash(), contenido.getCodec()));
+    }
+
+    @Override
+    public void confirmar(ContenidoImagen contenido) throws IOException {
+        Path respaldo = respaldo(contenido.getId());
+        if (Files.exists(respaldo)) {
+            enlazar(respaldo, ruta(contenido.getHash(), contenido.getCodec()));
+            Files.deleteIfExists(respaldo);
+        }
+    }
+
+    @Override
+    public void descartar(ContenidoImagen contenido) throws IOException {
+        Files.deleteIfExists(respaldo(contenido.getId()));
+    }
+
+    @Override
+    public void borrar(ContenidoImagen contenido) throws IOException {
+        Files.deleteIfExists(ruta(contenido.getHash(), contenido.getCodec()));
+    }
+
+    // Pone "origen" en "destino" si aun no esta. Con un enlace duro no se copia nada; si el sistema de ficheros
+    // no los admite se copia a un temporal y se mueve, para que nunca se lea un fichero a medias.
+    private void enlazar(Path origen, Path destino) throws IOException {
+        if (Files.exists(destino)) {
+            return;
+        }
+        Files.createDirectories(destino.getParent());
+        try {
+            Files.createLink(destino, origen);
+        } catch (FileAlreadyExistsException e) {
+            // Otra subida con el mismo contenido lo ha puesto antes
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Path copia = Files.createTempFile(origen.getParent(), "copia-", ".tmp");
+            try {
+                Files.copy(origen, copia, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(copia, destino, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(copia);
+            }
+        }
+    }
+
+    private Path respaldo(long id) {
+        return raiz.resolve("tmp").resolve("respaldo-" + id);
+    }
+
+    // Copia del rango [desde, desde + cantidad) sobre "destino". Hacia un OutputStream envuelto el JDK copia por
+    // un buffer pequeño, sin mapear el fichero; el envio directo del disco al socket lo hace Tomcat con sendfile
+    // (ver ImagenController)
+    static void transferir(FileChannel canal, long desde, long cantidad, WritableByteChannel destino) throws IOException {
+        long posicion = desde;
+        long fin = desde + cantidad;
+        while (posicion < fin) {
+            posicion += canal.transferTo(posicion, fin - posicion, destino);
+        }
+    }
+
+    private Path ruta(String hash, String codec) {
+        return raiz.resolve(hash.substring(0, 2)).resolve(hash + "." + codec);
+    }
+}
@@ -0,0 +1,51 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import com.uma.example.springuma.utils.ImageCodec;
+
+// Almacen del contenido binario de las imagenes. La tabla imagen solo guarda donde esta y con que codec.
+public interface ImageStore {
+
+    // Nombre que se guarda en la columna almacen de la imagen
+    String getNombre();
+
+    // Guarda el contenido de la imagen "id" comprimido con "codec".
+    // Devuelve la ubicacion con el hash SHA-256 y el tamaño del contenido original.
+    ContenidoImagen guardar(long id, InputStream in, ImageCodec codec) throws IOException;
+
+    // true si guardar escribe en la fila de la imagen, que entonces tiene que estar insertada antes
+    default boolean escribeEnFila() {
+        return false;
+    }
+
+    // Escribe el contenido descomprimido en "out", sin cerrarlo
+    void copiar(ContenidoImagen contenido, OutputStream out) throws IOException;
+
+    // Escribe solo los bytes [desde, desde + cantidad) del contenido descomprimido. Con codec se descomprime
+    // desde el principio descartando lo anterior al rango y se deja de leer al completarlo.
+    void copiar(ContenidoImagen contenido, OutputStream out, long desde, long cantidad) throws IOException;
+
+    // Fichero que contiene la imagen tal cual, sin comprimir, si el almacen lo tiene. Permite leerla
+    // sin bloquear (API reactiva); si no hay fichero el contenido se lee con copiar.
+    default Optional<Path> fichero(ContenidoImagen contenido) {
+        return Optional.empty();
+    }
+
+    // Al confirmarse la transaccion que ha registrado el contenido guardado: el contenido debe seguir disponible
+    // aunque un borrado de otra imagen con el mismo contenido se haya cruzado con la subida.
+    // Se llama con el contenido bloqueado (ImagenContenidoService).
+    default void confirmar(ContenidoImagen contenido) throws IOException {
+    }
+
+    // Al deshacerse la transaccion que ha registrado el contenido guardado, antes de comprobar si queda sin uso
+    default void descartar(ContenidoImagen contenido) throws IOException {
+    }
+
+    // Se llama cuando ya no queda ninguna imagen que use este contenido
+    void borrar(ContenidoImagen contenido) throws IOException;
+}
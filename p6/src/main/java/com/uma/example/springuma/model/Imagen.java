@@ -5,6 +5,7 @@ import java.util.Calendar;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.*;
@@ -13,7 +14,8 @@ import jakarta.persistence.*;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // para ignorar el serializador al devolver un objeto cuenta
 public class Imagen {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "imagen_seq")
+    @SequenceGenerator(name = "imagen_seq", sequenceName = "imagen_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "nombre")
@@ -30,15 +32,66 @@ public class Imagen {
         this.fecha = fecha;
     }
     // Relación con Paciente (muchas imágenes pueden pertenecer a un paciente)
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "paciente_id")
     private Paciente paciente;
 
+    // Solo se carga si se accede a el (requiere el enhancement de Hibernate del pom) y nunca se serializa a JSON
     @Lob
+    @Basic(fetch = FetchType.LAZY)
     @Column(name = "file_content")
+    @JsonIgnore
     private byte[] file_content;
 
+    // Codec con el que esta comprimido file_content (null en las imagenes antiguas, que usan deflate)
+    @Column(name = "codec")
+    private String codec;
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    // Almacen donde esta el contenido (null en las imagenes antiguas, guardadas en file_content)
+    @Column(name = "almacen")
+    private String almacen;
+
+    // SHA-256 del contenido original y tamaño en bytes sin comprimir
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "tamano")
+    private Long tamano;
+
+    public String getAlmacen() {
+        return almacen;
+    }
+
+    public void setAlmacen(String almacen) {
+        this.almacen = almacen;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Long getTamano() {
+        return tamano;
+    }
+
+    public void setTamano(Long tamano) {
+        this.tamano = tamano;
+    }
+
+    @JsonIgnore
     public byte[] getFile_content(){
          return file_content;
      }
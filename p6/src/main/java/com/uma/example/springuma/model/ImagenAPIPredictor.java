@@ -1,65 +1,213 @@
 package com.uma.example.springuma.model;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
 
-
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+
 
-public class ImagenAPIPredictor {
+// La API de inferencia solo acepta una imagen binaria por peticion: queryBatch hace una llamada por imagen,
+// en paralelo cuando hay hilos virtuales y una detras de otra con hilos de plataforma
+@Component
+@ConditionalOnProperty(name = "prediccion.backend", havingValue = "remote", matchIfMissing = true)
+public class ImagenAPIPredictor implements Predictor {
     //Class that is responsible for creating API call to external API service which will predict imagage.
     //Call in this version is based on the path of the image, but i checked if it works from our spring project
 
-    private static final String API_URL = "https://api-inference.huggingface.co/models/MUmairAB/Breast_Cancer_Detector";
+    private static final String MODEL = "MUmairAB/Breast_Cancer_Detector";
+    private static final String API_URL = "https://api-inference.huggingface.co/models/" + MODEL;
     // @TODO: replace USE_TOKEN_HERE with your token
     private static final String TOKEN = "Bearer USE_TOKEN_HERE";
-    
-    public static Map<String, Double> query(byte[] file_data) throws IOException, Exception {
-    
 
-        byte[] data = file_data;
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost(API_URL);
-            request.setHeader("Authorization", TOKEN);
-            request.setEntity(new ByteArrayEntity(data));
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Cliente con pool de conexiones compartido (PrediccionHttpConfig): HttpClient 4 con hilos de plataforma
+    // o el cliente del JDK con hilos virtuales. Solo existe uno de los dos.
+    @Autowired(required = false)
+    private CloseableHttpClient prediccionHttpClient;
+
+    @Autowired(required = false)
+    private HttpClient prediccionHttpClientVirtual;
+
+    // Cliente no bloqueante, solo con la API reactiva activada (reactivo.enabled)
+    @Autowired(required = false)
+    private WebClient prediccionWebClient;
+
+    @Value("${prediccion.http.max-conexiones-por-ruta:20}")
+    private int maxConexionesPorRuta;
+
+    @Value("${prediccion.http.read-timeout:20s}")
+    private Duration readTimeout;
+
+    @Value("${prediccion.http.pool-timeout:10s}")
+    private Duration poolTimeout;
+
+    @Autowired
+    private Environment environment;
+
+    // Con hilos virtuales, un hilo por llamada: el limite de llamadas simultaneas lo pone el semaforo
+    // de conexiones (prediccion.http.max-conexiones-por-ruta), no el numero de hilos
+    private SimpleAsyncTaskExecutor executorLlamadas;
+    private Semaphore conexiones;
+
+    @PostConstruct
+    public void iniciar() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            executorLlamadas = new SimpleAsyncTaskExecutor("prediccion-llamada-");
+            executorLlamadas.setVirtualThreads(true);
+            // Cada llamada sigue en la traza (y con el traceId en los logs) del trabajo que la lanza
+            executorLlamadas.setTaskDecorator(new ContextPropagatingTaskDecorator());
+            conexiones = new Semaphore(maxConexionesPorRuta);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (executorLlamadas != null) {
+            executorLlamadas.close();
+        }
+    }
+
+    @Override
+    public String getModelo() {
+        return MODEL;
+    }
 
-            HttpResponse response = client.execute(request);
+    @Override
+    public Map<String, Double> query(byte[] file_data) throws IOException, Exception {
+        if (prediccionHttpClientVirtual != null) {
+            return queryVirtual(file_data);
+        }
+        HttpPost request = new HttpPost(API_URL);
+        request.setHeader("Authorization", TOKEN);
+        request.setEntity(new ByteArrayEntity(file_data));
+
+        // Leer la respuesta entera devuelve la conexion al pool para la siguiente prediccion
+        try (CloseableHttpResponse response = prediccionHttpClient.execute(request)) {
             String jsonResponse = EntityUtils.toString(response.getEntity());
-            return processResponse(jsonResponse);
+            return processResponse(response.getStatusLine().getStatusCode(), jsonResponse);
+        }
+        catch(ErrorModeloException e){
+            throw e;
         }
-        catch(Exception e){
-            throw new Exception(e.getMessage());
+        catch(IOException e){
+            throw new ErrorModeloException(e.getMessage(), true, e);
         }
     }
 
-    private static Map<String, Double> processResponse(String jsonResponse) throws Exception {
-        ObjectMapper mapper = new ObjectMapper();
-        if (jsonResponse.trim().startsWith("[")) {
-            List<Map<String, Object>> responseList = mapper.readValue(jsonResponse, new TypeReference<List<Map<String, Object>>>() {});
-            Map<String, Double> resultMap = new HashMap<>();
-            for (Map<String, Object> entry : responseList) {
-                resultMap.put((String) entry.get("label"), (Double) entry.get("score"));
+    private Map<String, Double> queryVirtual(byte[] file_data) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(API_URL))
+                .header("Authorization", TOKEN)
+                .timeout(readTimeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(file_data))
+                .build();
+        if (!conexiones.tryAcquire(poolTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new ErrorModeloException("Timeout waiting for connection to the model", true, null);
+        }
+        try {
+            HttpResponse<String> response = prediccionHttpClientVirtual.send(request, HttpResponse.BodyHandlers.ofString());
+            return processResponse(response.statusCode(), response.body());
+        }
+        catch(IOException e){
+            throw new ErrorModeloException(e.getMessage(), true, e);
+        }
+        finally {
+            conexiones.release();
+        }
+    }
 
+    // La respuesta se procesa sea cual sea el codigo HTTP, como en query: los errores vienen en el cuerpo
+    @Override
+    public Mono<Map<String, Double>> queryReactivo(byte[] file_data) {
+        if (prediccionWebClient == null) {
+            return Predictor.super.queryReactivo(file_data);
+        }
+        return prediccionWebClient.post()
+                .uri(API_URL)
+                .header("Authorization", TOKEN)
+                .bodyValue(file_data)
+                .exchangeToMono(response -> response.bodyToMono(String.class).defaultIfEmpty("")
+                        .flatMap(jsonResponse -> Mono.fromCallable(() -> processResponse(response.statusCode().value(), jsonResponse))));
+    }
+
+    @Override
+    public List<Map<String, Double>> queryBatch(List<byte[]> files_data) throws Exception {
+        if (executorLlamadas == null || files_data.size() == 1) {
+            return Predictor.super.queryBatch(files_data);
+        }
+        List<Future<Map<String, Double>>> llamadas = new ArrayList<>(files_data.size());
+        for (byte[] file_data : files_data) {
+            llamadas.add(executorLlamadas.submit(() -> query(file_data)));
+        }
+        List<Map<String, Double>> results = new ArrayList<>(files_data.size());
+        try {
+            for (Future<Map<String, Double>> llamada : llamadas) {
+                results.add(llamada.get());
             }
-            return resultMap;
-        } else {
-            Map<String, Object> responseMap = mapper.readValue(jsonResponse, new TypeReference<Map<String, Object>>() {});
-            if (responseMap.containsKey("error")) {
-                throw new Exception("Error from API: " + responseMap.get("error"));
+        } catch (ExecutionException e) {
+            llamadas.forEach(llamada -> llamada.cancel(true));
+            throw e.getCause() instanceof Exception causa ? causa : new Exception(e.getCause().getMessage());
+        }
+        return results;
+    }
+
+    // Los errores con codigo 5xx o 429 y el modelo cargando se pueden reintentar; los 4xx y las respuestas
+    // que no se pueden leer no
+    private static Map<String, Double> processResponse(int status, String jsonResponse) throws ErrorModeloException {
+        boolean transitorio = status >= 500 || status == 429;
+        try {
+            if (jsonResponse.trim().startsWith("[")) {
+                List<Map<String, Object>> responseList = MAPPER.readValue(jsonResponse, new TypeReference<List<Map<String, Object>>>() {});
+                Map<String, Double> resultMap = new HashMap<>();
+                for (Map<String, Object> entry : responseList) {
+                    resultMap.put((String) entry.get("label"), (Double) entry.get("score"));
+
+                }
+                return resultMap;
             } else {
-                throw new Exception("Unexpected response format: " + jsonResponse);
+                Map<String, Object> responseMap = MAPPER.readValue(jsonResponse, new TypeReference<Map<String, Object>>() {});
+                if (responseMap.containsKey("error")) {
+                    String error = String.valueOf(responseMap.get("error"));
+                    throw new ErrorModeloException("Error from API: " + error, transitorio || error.contains("currently loading"), null);
+                } else {
+                    throw new ErrorModeloException("Unexpected response format: " + jsonResponse, transitorio, null);
+                }
             }
+        } catch (JsonProcessingException e) {
+            throw new ErrorModeloException("Unexpected response format: " + jsonResponse, transitorio, e);
         }
     }
 }
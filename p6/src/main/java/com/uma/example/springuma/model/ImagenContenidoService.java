@@ -0,0 +1,205 @@
+package com.uma.example.springuma.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.uma.example.springuma.utils.ImageCodec;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+// Lectura y escritura del contenido de las imagenes en el ImageStore que corresponda a cada una.
+// Todo el acceso es por JDBC o disco: nunca se carga la entidad Imagen ni su BLOB a traves de Hibernate.
+// Cada lectura y escritura completa del contenido es un span de la traza (imagen.lectura, imagen.escritura).
+// El recuento de imagenes que usan un contenido y el borrado de su fichero se hacen con el hash bloqueado, igual que
+// la confirmacion de las subidas de ese contenido: un borrado no puede dejar sin fichero a una subida confirmada.
+// Los bloqueos son de esta instancia de la aplicacion.
+@Service
+public class ImagenContenidoService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagenContenidoService.class);
+
+    private static final int BLOQUEOS = 64;
+
+    private final Lock[] bloqueos = new Lock[BLOQUEOS];
+
+    @Autowired
+    private RepositoryImagenContenido repositoryImagenContenido;
+
+    @Autowired
+    private List<ImageStore> stores;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    // Almacen para las imagenes nuevas: filesystem o blob
+    @Value("${imagen.store:filesystem}")
+    private String storePorDefecto;
+
+    public ImagenContenidoService() {
+        for (int i = 0; i < BLOQUEOS; i++) {
+            bloqueos[i] = new ReentrantLock();
+        }
+    }
+
+    public ImageStore getStorePorDefecto() {
+        return getStore(storePorDefecto);
+    }
+
+    public ImageStore getStore(String nombre) {
+        // Las imagenes anteriores a la columna almacen estan en file_content
+        String buscado = nombre == null ? BlobImageStore.NOMBRE : nombre;
+        return stores.stream().filter(s -> s.getNombre().equals(buscado)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Almacen de imagenes desconocido: " + buscado));
+    }
+
+    public Optional<ContenidoImagen> buscar(long id) {
+        return repositoryImagenContenido.buscarContenido(id);
+    }
+
+    // Guarda el contenido de una imagen ya insertada y registra su hash y tamaño.
+    // Debe llamarse dentro de la transaccion que ha insertado la imagen. Al terminar la transaccion el store
+    // confirma el contenido o, si se deshace, lo descarta y se borra si ninguna otra imagen lo usa.
+    public ContenidoImagen guardar(long id, InputStream in, ImageCodec codec) throws IOException {
+        ImageStore store = getStorePorDefecto();
+        return Observation.createNotStarted("imagen.escritura", observationRegistry)
+                .lowCardinalityKeyValue("almacen", store.getNombre())
+                .highCardinalityKeyValue("imagen.id", String.valueOf(id))
+                .observeChecked(() -> {
+                    ContenidoImagen contenido = store.guardar(id, in, codec);
+                    repositoryImagenContenido.registrarContenido(contenido);
+                    alTerminar(contenido);
+                    return contenido;
+                });
+    }
+
+    // Para las altas por lotes: guarda el contenido de una imagen persistida pero aun sin insertar (ya tiene id)
+    // y deja el hash y el tamaño en la entidad, que se inserta con ellos. Solo para almacenes que no escriben
+    // en la fila (ImageStore.escribeEnFila); con los demas hay que insertar la fila y usar guardar.
+    public ContenidoImagen guardarAntesDeInsertar(Imagen imagen, InputStream in, ImageCodec codec) throws IOException {
+        ImageStore store = getStorePorDefecto();
+        return Observation.createNotStarted("imagen.escritura", observationRegistry)
+                .lowCardinalityKeyValue("almacen", store.getNombre())
+                .highCardinalityKeyValue("imagen.id", String.valueOf(imagen.getId()))
+                .observeChecked(() -> {
+                    ContenidoImagen contenido = store.guardar(imagen.getId(), in, codec);
+                    imagen.setAlmacen(contenido.getAlmacen());
+                    imagen.setCodec(contenido.getCodec());
+                    imagen.setHash(contenido.getHash());
+                    imagen.setTamano(contenido.getTamano());
+                    alTerminar(contenido);
+                    return contenido;
+                });
+    }
+
+    private void alTerminar(ContenidoImagen contenido) throws IOException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            terminar(contenido, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                try {
+                    terminar(contenido, estado == STATUS_COMMITTED);
+                } catch (IOException e) {
+                    log.error("Error al terminar la escritura del contenido de la imagen " + contenido.getId(), e);
+                }
+            }
+        });
+    }
+
+    private void terminar(ContenidoImagen contenido, boolean confirmada) throws IOException {
+        ImageStore store = getStore(contenido.getAlmacen());
+        Lock bloqueo = bloqueo(contenido.getHash());
+        bloqueo.lock();
+        try {
+            if (confirmada) {
+                store.confirmar(contenido);
+            } else {
+                store.descartar(contenido);
+                borrarSinUso(contenido, store);
+            }
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    // Devuelve false si la imagen no existe
+    public boolean copiar(long id, OutputStream out) throws IOException {
+        Optional<ContenidoImagen> contenido = buscar(id);
+        if (contenido.isEmpty()) {
+            return false;
+        }
+        copiar(contenido.get(), out);
+        return true;
+    }
+
+    public void copiar(ContenidoImagen contenido, OutputStream out) throws IOException {
+        ImageStore store = getStore(contenido.getAlmacen());
+        Observation.createNotStarted("imagen.lectura", observationRegistry)
+                .lowCardinalityKeyValue("almacen", store.getNombre())
+                .highCardinalityKeyValue("imagen.id", String.valueOf(contenido.getId()))
+                .observeChecked(() -> store.copiar(contenido, out));
+    }
+
+    // Bytes [desde, desde + cantidad) del contenido descomprimido, para las descargas parciales
+    public void copiar(ContenidoImagen contenido, OutputStream out, long desde, long cantidad) throws IOException {
+        getStore(contenido.getAlmacen()).copiar(contenido, out, desde, cantidad);
+    }
+
+    public Optional<Path> fichero(ContenidoImagen contenido) {
+        return getStore(contenido.getAlmacen()).fichero(contenido);
+    }
+
+    // Contenido descomprimido completo, para los usos que necesitan la imagen entera (prediccion)
+    public byte[] leer(long id) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!copiar(id, out)) {
+            throw new ImagenNoEncontradaException(id);
+        }
+        return out.toByteArray();
+    }
+
+    // Se llama despues de borrar la fila: el contenido solo se borra si ninguna otra imagen lo comparte
+    public void borrar(ContenidoImagen contenido) throws IOException {
+        ImageStore store = getStore(contenido.getAlmacen());
+        if (contenido.getHash() == null) {
+            store.borrar(contenido);
+            return;
+        }
+        Lock bloqueo = bloqueo(contenido.getHash());
+        bloqueo.lock();
+        try {
+            borrarSinUso(contenido, store);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void borrarSinUso(ContenidoImagen contenido, ImageStore store) throws IOException {
+        if (repositoryImagenContenido.contarPorHash(contenido.getAlmacen(), contenido.getHash(), contenido.getCodec()) == 0) {
+            store.borrar(contenido);
+        }
+    }
+
+    private Lock bloqueo(String hash) {
+        return bloqueos[Math.floorMod(hash.hashCode(), BLOQUEOS)];
+    }
+}
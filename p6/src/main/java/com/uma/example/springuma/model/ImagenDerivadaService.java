@@ -0,0 +1,256 @@
+package com.uma.example.springuma.model;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.uma.example.springuma.utils.ImageUtils;
+
+import jakarta.annotation.PostConstruct;
+
+// Miniaturas y piramide de teselas de las imagenes, generadas bajo demanda la primera vez que se piden.
+// Las derivadas ya codificadas se guardan en una cache limitada por bytes. De la piramide solo se guardan
+// decodificados los niveles pequeños (imagen.derivadas.nivel-en-memoria), en otra cache limitada por pixeles.
+// Los niveles grandes, como la resolucion original, no se guardan: al pedir una tesela suya que no este en cache
+// se decodifica solo su region del original (submuestreada hasta el tamaño del nivel) y se codifica esa tesela.
+// Los aciertos de cache no consultan la base de datos; si la imagen no existe, la lectura del original lo indica.
+@Service
+public class ImagenDerivadaService {
+
+    @Autowired
+    private ImagenContenidoService imagenContenidoService;
+
+    // Lado mayor de las miniaturas, en pixeles
+    @Value("${imagen.miniatura.tamano:256}")
+    private int tamanoMiniatura;
+
+    @Value("${imagen.tesela.tamano:256}")
+    private int tamanoTesela;
+
+    // Formato de miniaturas y teselas: jpg o png
+    @Value("${imagen.derivadas.formato:jpg}")
+    private String formato;
+
+    @Value("${imagen.derivadas.cache.bytes:67108864}")
+    private long maximoBytes;
+
+    @Value("${imagen.derivadas.cache.pixeles:33554432}")
+    private long maximoPixeles;
+
+    // Pixeles del nivel mas grande que se guarda decodificado
+    @Value("${imagen.derivadas.nivel-en-memoria:1048576}")
+    private long maximoNivel;
+
+    private Cache<String, byte[]> derivadas;
+    private Cache<Long, Piramide> piramides;
+
+    @PostConstruct
+    public void iniciar() {
+        derivadas = Caffeine.newBuilder()
+                .maximumWeight(maximoBytes)
+                .weigher((String clave, byte[] datos) -> datos.length)
+                .build();
+        piramides = Caffeine.newBuilder()
+                .maximumWeight(maximoPixeles)
+                .weigher((Long id, Piramide piramide) -> (int) Math.min(Integer.MAX_VALUE, piramide.pixeles()))
+                .build();
+    }
+
+    public String getFormato() {
+        return formato;
+    }
+
+    // Miniatura de la imagen; las imagenes mas pequeñas que la miniatura no se amplian
+    public Optional<byte[]> getMiniatura(long id) throws IOException {
+        try {
+            return Optional.of(cargar(id + ":thumb", () -> {
+                // Si la piramide ya esta en memoria se parte de su nivel mas cercano, si no de la imagen original
+                Piramide piramide = piramides.getIfPresent(id);
+                BufferedImage origen = piramide != null ? piramide.nivelParaMiniatura(tamanoMiniatura) : null;
+                if (origen == null) {
+                    origen = leerOriginal(id);
+                }
+                double escala = Math.min(1.0, (double) tamanoMiniatura / Math.max(origen.getWidth(), origen.getHeight()));
+                int ancho = Math.max(1, (int) Math.round(origen.getWidth() * escala));
+                int alto = Math.max(1, (int) Math.round(origen.getHeight() * escala));
+                return ImageUtils.encodeImage(ImageUtils.scaleImage(origen, ancho, alto), formato);
+            }));
+        } catch (ImagenNoEncontradaException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<ImagenPiramide> getPiramide(long id) throws IOException {
+        try {
+            Piramide piramide = piramide(id);
+            int original = piramide.niveles() - 1;
+            return Optional.of(new ImagenPiramide(id, piramide.anchos[original], piramide.altos[original], tamanoTesela,
+                    piramide.niveles(), formato));
+        } catch (ImagenNoEncontradaException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Tesela (x, y) del nivel z. Las teselas del borde derecho e inferior pueden ser mas pequeñas.
+    // Devuelve vacio si la imagen no existe o la tesela esta fuera de la piramide.
+    public Optional<byte[]> getTesela(long id, int z, int x, int y) throws IOException {
+        String clave = clave(id, z, x, y);
+        byte[] cacheada = derivadas.getIfPresent(clave);
+        if (cacheada != null) {
+            return Optional.of(cacheada);
+        }
+        try {
+            Piramide piramide = piramide(id);
+            if (z < 0 || z >= piramide.niveles() || x < 0 || y < 0
+                    || x * tamanoTesela >= piramide.anchos[z] || y * tamanoTesela >= piramide.altos[z]) {
+                return Optional.empty();
+            }
+            BufferedImage nivel = piramide.enMemoria[z];
+            if (nivel != null) {
+                return Optional.of(cargar(clave, () -> codificar(recortar(nivel, x, y))));
+            }
+            return Optional.of(cargar(clave, () -> codificar(leerRegion(id, piramide, z, x, y))));
+        } catch (ImagenNoEncontradaException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Se llama al borrar la imagen
+    public void invalidar(long id) {
+        piramides.invalidate(id);
+        String prefijo = id + ":";
+        derivadas.asMap().keySet().removeIf(clave -> clave.startsWith(prefijo));
+    }
+
+    private BufferedImage recortar(BufferedImage nivel, int x, int y) {
+        int desdeX = x * tamanoTesela;
+        int desdeY = y * tamanoTesela;
+        return nivel.getSubimage(desdeX, desdeY,
+                Math.min(tamanoTesela, nivel.getWidth() - desdeX), Math.min(tamanoTesela, nivel.getHeight() - desdeY));
+    }
+
+    // Tesela (x, y) de un nivel que no se guarda decodificado, leida del original: la region que cubre,
+    // tomando uno de cada 2^(niveles - 1 - z) pixeles, que es lo que mide el nivel z respecto al original
+    private BufferedImage leerRegion(long id, Piramide piramide, int z, int x, int y) throws IOException {
+        int original = piramide.niveles() - 1;
+        int paso = 1 << (original - z);
+        int lado = tamanoTesela * paso;
+        int desdeX = x * lado;
+        int desdeY = y * lado;
+        Rectangle region = new Rectangle(desdeX, desdeY,
+                Math.min(lado, piramide.anchos[original] - desdeX), Math.min(lado, piramide.altos[original] - desdeY));
+        return ImageUtils.readRegion(imagenContenidoService.leer(id), region, paso);
+    }
+
+    // La tesela se copia a RGB, que es lo que admite jpg aunque el original tenga transparencia
+    private byte[] codificar(BufferedImage tesela) throws IOException {
+        return ImageUtils.encodeImage(ImageUtils.scaleImage(tesela, tesela.getWidth(), tesela.getHeight()), formato);
+    }
+
+    private static String clave(long id, int z, int x, int y) {
+        return id + ":" + z + "/" + x + "/" + y;
+    }
+
+    private Piramide piramide(long id) throws IOException {
+        try {
+            return piramides.get(id, clave -> {
+                try {
+                    return new Piramide(leerOriginal(clave), tamanoTesela, maximoNivel);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private BufferedImage leerOriginal(long id) throws IOException {
+        return ImageUtils.readImage(imagenContenidoService.leer(id));
+    }
+
+    private byte[] cargar(String clave, Generador generador) throws IOException {
+        try {
+            return derivadas.get(clave, c -> {
+                try {
+                    return generador.generar();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface Generador {
+        byte[] generar() throws IOException;
+    }
+
+    // Tamaños de los niveles de la piramide, del 0 (cabe en una tesela) a la resolucion original,
+    // y los niveles de hasta maximoNivel pixeles ya decodificados (null en los demas)
+    private static class Piramide {
+
+        private final int[] anchos;
+        private final int[] altos;
+        private final BufferedImage[] enMemoria;
+
+        Piramide(BufferedImage original, int tesela, long maximoNivel) {
+            int niveles = 1;
+            for (int ancho = original.getWidth(), alto = original.getHeight(); ancho > tesela || alto > tesela; niveles++) {
+                ancho = mitad(ancho);
+                alto = mitad(alto);
+            }
+            anchos = new int[niveles];
+            altos = new int[niveles];
+            enMemoria = new BufferedImage[niveles];
+            BufferedImage nivel = original;
+            for (int z = niveles - 1; z >= 0; z--) {
+                if (z < niveles - 1) {
+                    nivel = ImageUtils.scaleImage(nivel, mitad(nivel.getWidth()), mitad(nivel.getHeight()));
+                }
+                anchos[z] = nivel.getWidth();
+                altos[z] = nivel.getHeight();
+                if ((long) nivel.getWidth() * nivel.getHeight() <= maximoNivel) {
+                    enMemoria[z] = nivel;
+                }
+            }
+        }
+
+        int niveles() {
+            return anchos.length;
+        }
+
+        // Nivel en memoria mas pequeño que sigue siendo al menos del tamaño de la miniatura, o null si no hay
+        BufferedImage nivelParaMiniatura(int tamano) {
+            for (BufferedImage nivel : enMemoria) {
+                if (nivel != null && Math.max(nivel.getWidth(), nivel.getHeight()) >= tamano) {
+                    return nivel;
+                }
+            }
+            return null;
+        }
+
+        long pixeles() {
+            long total = 1;
+            for (BufferedImage nivel : enMemoria) {
+                if (nivel != null) {
+                    total += (long) nivel.getWidth() * nivel.getHeight();
+                }
+            }
+            return total;
+        }
+
+        private static int mitad(int lado) {
+            return Math.max(1, (lado + 1) / 2);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+
+// La imagen no existe o se ha borrado mientras se usaba. Es una IOException, como NoSuchFileException,
+// para que los que ya leen el contenido no tengan que declararla aparte. Los controladores la devuelven como 404.
+public class ImagenNoEncontradaException extends IOException {
+
+    public ImagenNoEncontradaException(long id) {
+        super("Imagen no encontrada: " + id);
+    }
+}
@@ -0,0 +1,46 @@
+package com.uma.example.springuma.model;
+
+// Descripcion de la piramide de teselas de una imagen, para que el visor calcule las teselas de cada nivel.
+// El nivel 0 cabe en una tesela y el ultimo nivel es la resolucion original; cada nivel dobla al anterior.
+public class ImagenPiramide {
+
+    private long id;
+    private int ancho;
+    private int alto;
+    private int tesela;
+    private int niveles;
+    private String formato;
+
+    public ImagenPiramide(long id, int ancho, int alto, int tesela, int niveles, String formato) {
+        this.id = id;
+        this.ancho = ancho;
+        this.alto = alto;
+        this.tesela = tesela;
+        this.niveles = niveles;
+        this.formato = formato;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getAncho() {
+        return ancho;
+    }
+
+    public int getAlto() {
+        return alto;
+    }
+
+    public int getTesela() {
+        return tesela;
+    }
+
+    public int getNiveles() {
+        return niveles;
+    }
+
+    public String getFormato() {
+        return formato;
+    }
+}
@@ -0,0 +1,74 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+// Metadatos de una imagen sin su contenido, para los endpoints de listado e informacion.
+// Se construye directamente desde la consulta JPQL, sin cargar la entidad Imagen.
+public class ImagenResumen {
+
+    private final Long id;
+    private final String nombre;
+    private final Calendar fecha;
+    private final String hash;
+    private final Long tamano;
+    private final PacienteRef paciente;
+
+    public ImagenResumen(Long id, String nombre, Calendar fecha, String hash, Long tamano,
+            Long pacienteId, String pacienteNombre, String pacienteDni) {
+        this.id = id;
+        this.nombre = nombre;
+        this.fecha = fecha;
+        this.hash = hash;
+        this.tamano = tamano;
+        this.paciente = pacienteId == null ? null : new PacienteRef(pacienteId, pacienteNombre, pacienteDni);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Calendar getFecha() {
+        return fecha;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public Long getTamano() {
+        return tamano;
+    }
+
+    public PacienteRef getPaciente() {
+        return paciente;
+    }
+
+    public static class PacienteRef {
+
+        private final Long id;
+        private final String nombre;
+        private final String dni;
+
+        public PacienteRef(Long id, String nombre, String dni) {
+            this.id = id;
+            this.nombre = nombre;
+            this.dni = dni;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public String getDni() {
+            return dni;
+        }
+    }
+}
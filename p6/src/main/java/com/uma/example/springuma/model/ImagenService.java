@@ -1,22 +1,58 @@
 package com.uma.example.springuma.model;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.uma.example.springuma.utils.ImageUtils;
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageCodecSelector;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ImagenService {
 
+    private static final Logger logPrediccion = LoggerFactory.getLogger(PrediccionService.LOGGER_RESPUESTAS);
+
     @Autowired
     private RepositoryImagen repositoryImagen;
 
+    @Autowired
+    private ImagenContenidoService imagenContenidoService;
+
+    @Autowired
+    private PrediccionCacheService prediccionCacheService;
+
+    @Autowired
+    private ImageCodecSelector imageCodecSelector;
+
+    @Autowired
+    private ImagenDerivadaService imagenDerivadaService;
+
+    @Autowired
+    private EntidadCacheService entidadCacheService;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
     public List<Imagen> getAllImagenes() {
         return repositoryImagen.findAll();
     }
@@ -26,60 +62,131 @@ public class ImagenService {
     }
 
     public String getNewPrediccion(Long id) throws IOException, Exception{
-        Map<String, Double> response = 
-        ImagenAPIPredictor.query(ImageUtils.decompressImage(repositoryImagen.getReferenceById(id).getFile_content()));
-        System.out.println("resp");
-        System.out.println( response);
-        double score_0 = response.get("LABEL_0");
-        double score_1 = response.get("LABEL_1");
-        System.out.println("resp");
-        System.out.println( response);
-        String resulString;
-        if (score_0 > score_1){
-            resulString = "Not cancer (label 0),  score: " + score_0;
-        }else{
-            resulString = "Cancer (label 1), score: " + score_1;
-        }
-        return resulString;
+        Map<String, Double> response = prediccionCacheService.predecir(id);
+        logPrediccion.atInfo()
+                .addKeyValue("imagenId", id)
+                .addKeyValue("respuesta", response)
+                .log("Prediccion de la imagen");
+        return PrediccionService.describir(response);
     }
 
     public Imagen addImagen(Imagen imagen) {
-        return repositoryImagen.saveAndFlush(imagen);
+        return repositoryImagen.save(imagen);
     }
 
     public void updateImagen(Imagen imagen) {
         repositoryImagen.save(imagen);
     }
 
-    public void removeImagen(Imagen imagen) {
-        repositoryImagen.delete(imagen);
+    public void removeImagen(Imagen imagen) throws IOException {
+        removeImagenByID(imagen.getId());
     }
 
-    public void removeImagenByID(Long id) {
+    // El contenido se borra del almacen despues de la fila, y solo si ninguna otra imagen lo comparte
+    public void removeImagenByID(Long id) throws IOException {
+        Optional<ContenidoImagen> contenido = imagenContenidoService.buscar(id);
         repositoryImagen.deleteById(id);
+        imagenDerivadaService.invalidar(id);
+        entidadCacheService.imagenBorrada();
+        if (contenido.isPresent()) {
+            imagenContenidoService.borrar(contenido.get());
+        }
     }
 
     public List<Imagen> getImagenesPaciente(Long id) {
         return repositoryImagen.getByPacienteId(id);
     }
 
+    public List<ImagenResumen> getResumenImagenesPaciente(Long id) {
+        return repositoryImagen.findResumenByPacienteId(id);
+    }
+
+    public List<ImagenResumen> getResumenImagenesPaciente(Long id, long after, Limit limite) {
+        return repositoryImagen.findResumenByPacienteIdAfter(id, after, limite);
+    }
+
+    // Pasa los resumenes de las imagenes del paciente a "consumidor" a medida que se leen de la base de datos
+    @Transactional(readOnly = true)
+    public void recorrerResumenImagenesPaciente(Long id, Consumer<ImagenResumen> consumidor) {
+        try (Stream<ImagenResumen> resumenes = repositoryImagen.streamResumenByPacienteId(id)) {
+            resumenes.forEach(consumidor);
+        }
+    }
+
+    public Optional<ImagenResumen> getResumenImagen(Long id) {
+        return repositoryImagen.findResumenById(id);
+    }
+
+    // La fila se inserta solo con los metadatos y despues el fichero se comprime en streaming hacia el almacen,
+    // asi la memoria usada no depende del tamaño de la imagen
+    @Transactional
     public String uploadImage(MultipartFile file, Paciente paciente) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            guardarImagen(file.getOriginalFilename(), file.getContentType(), in, paciente);
+        }
+        return "{\"response\" : \"file uploaded successfully : " + file.getOriginalFilename()+"\"}";
+    }
+
+    // Inserta la imagen y guarda el contenido leyendo "in" hasta el final, sin cerrarlo
+    @Transactional
+    public Imagen guardarImagen(String nombre, String contentType, InputStream in, Paciente paciente) throws IOException {
         Imagen imagen = new Imagen();
-        imagen.setNombre(file.getOriginalFilename());
-        imagen.setFile_content(ImageUtils.compressImage(file.getBytes()));
+        imagen.setNombre(nombre);
         imagen.setPaciente(paciente);
         imagen.setFecha(Calendar.getInstance());
-        imagen = repositoryImagen.saveAndFlush(imagen);
-        if (imagen != null) {
-            return "{\"response\" : \"file uploaded successfully : " + file.getOriginalFilename()+"\"}";
-        }
-        return null;
+        ImageCodec codec = imageCodecSelector.paraContentType(contentType, nombre);
+        imagen.setCodec(codec.getNombre());
+        imagen.setAlmacen(imagenContenidoService.getStorePorDefecto().getNombre());
+        // Aqui si hace falta el flush: el contenido se escribe por JDBC sobre la fila ya insertada
+        Imagen guardada = Observation.createNotStarted("imagen.guardado", observationRegistry)
+                .observe(() -> repositoryImagen.saveAndFlush(imagen));
+        imagenContenidoService.guardar(guardada.getId(), in, codec);
+        return guardada;
+    }
+
+    public byte[] downloadImage(long id) throws IOException {
+        return imagenContenidoService.leer(id);
+    }
+
+    public Optional<ContenidoImagen> getContenido(long id) {
+        return imagenContenidoService.buscar(id);
+    }
+
+    // Version en streaming de downloadImage: el contenido se lee y descomprime por bloques directamente sobre "out"
+    public void downloadImage(ContenidoImagen contenido, OutputStream out) throws IOException {
+        imagenContenidoService.copiar(contenido, out);
+    }
+
+    // Content-Type de la imagen segun la extension de su nombre; octet-stream si no se reconoce
+    public MediaType getTipo(ContenidoImagen contenido) {
+        return MediaTypeFactory.getMediaType(contenido.getNombre()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    // Fichero sin comprimir de la imagen, para enviarlo tal cual (sendfile en Tomcat, zero-copy en la API reactiva)
+    public Optional<Path> getFichero(ContenidoImagen contenido) {
+        return imagenContenidoService.fichero(contenido);
+    }
+
+    // Parte de la imagen, para las peticiones con cabecera Range
+    public void downloadImage(ContenidoImagen contenido, OutputStream out, long desde, long cantidad) throws IOException {
+        imagenContenidoService.copiar(contenido, out, desde, cantidad);
+    }
+
+    // Miniatura para las galerias, en el formato de getFormatoDerivadas
+    public Optional<byte[]> getMiniatura(long id) throws IOException {
+        return imagenDerivadaService.getMiniatura(id);
+    }
+
+    public Optional<ImagenPiramide> getPiramide(long id) throws IOException {
+        return imagenDerivadaService.getPiramide(id);
+    }
+
+    public Optional<byte[]> getTesela(long id, int z, int x, int y) throws IOException {
+        return imagenDerivadaService.getTesela(id, z, x, y);
     }
 
-    public byte[] downloadImage(long id) {
-        Imagen dbImageData = repositoryImagen.getReferenceById(id);
-        byte[] images = ImageUtils.decompressImage(dbImageData.getFile_content());
-        return images;
+    public String getFormatoDerivadas() {
+        return imagenDerivadaService.getFormato();
     }
 
 }
@@ -0,0 +1,30 @@
+package com.uma.example.springuma.model;
+
+// Error en una importacion masiva (CargaMasivaService). Indica donde ha fallado (linea del NDJSON o entrada del zip)
+// y cuantas filas quedaron confirmadas por las transacciones anteriores. Si el error es de los datos
+// (dni desconocido, JSON o zip mal formado) se responde 400 (RespuestaImportacion); si no, 500.
+public class ImportacionException extends Exception {
+
+    private final String ubicacion;
+    private final long confirmadas;
+    private final boolean datosErroneos;
+
+    public ImportacionException(String message, String ubicacion, long confirmadas, boolean datosErroneos, Throwable cause) {
+        super(message, cause);
+        this.ubicacion = ubicacion;
+        this.confirmadas = confirmadas;
+        this.datosErroneos = datosErroneos;
+    }
+
+    public String getUbicacion() {
+        return ubicacion;
+    }
+
+    public long getConfirmadas() {
+        return confirmadas;
+    }
+
+    public boolean isDatosErroneos() {
+        return datosErroneos;
+    }
+}
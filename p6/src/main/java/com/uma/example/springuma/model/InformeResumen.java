@@ -0,0 +1,69 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+// Informe con los datos basicos de su imagen y paciente, para el listado de informes de una imagen.
+// Se construye directamente desde la consulta JPQL con una sola sentencia, sin cargar las entidades relacionadas.
+public class InformeResumen {
+
+    private final Long id;
+    private final String prediccion;
+    private final String contenido;
+    private final ImagenRef imagen;
+
+    public InformeResumen(Long id, String prediccion, String contenido, Long imagenId, String imagenNombre,
+            Calendar imagenFecha, Long pacienteId, String pacienteNombre, String pacienteDni) {
+        this.id = id;
+        this.prediccion = prediccion;
+        this.contenido = contenido;
+        this.imagen = imagenId == null ? null : new ImagenRef(imagenId, imagenNombre, imagenFecha,
+                pacienteId == null ? null : new ImagenResumen.PacienteRef(pacienteId, pacienteNombre, pacienteDni));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getPrediccion() {
+        return prediccion;
+    }
+
+    public String getContenido() {
+        return contenido;
+    }
+
+    public ImagenRef getImagen() {
+        return imagen;
+    }
+
+    public static class ImagenRef {
+
+        private final Long id;
+        private final String nombre;
+        private final Calendar fecha;
+        private final ImagenResumen.PacienteRef paciente;
+
+        public ImagenRef(Long id, String nombre, Calendar fecha, ImagenResumen.PacienteRef paciente) {
+            this.id = id;
+            this.nombre = nombre;
+            this.fecha = fecha;
+            this.paciente = paciente;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public Calendar getFecha() {
+            return fecha;
+        }
+
+        public ImagenResumen.PacienteRef getPaciente() {
+            return paciente;
+        }
+    }
+}
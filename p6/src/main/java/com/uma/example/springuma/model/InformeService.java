@@ -2,11 +2,18 @@ package com.uma.example.springuma.model;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.uma.example.springuma.utils.ImageUtils;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 
 import java.util.Map;
 
@@ -14,11 +21,19 @@ import java.util.Map;
 @Service
 public class InformeService {
 
+    private static final Logger logPrediccion = LoggerFactory.getLogger(PrediccionService.LOGGER_RESPUESTAS);
+
     @Autowired
     private RepositoryInforme repositoryInforme;
 
     @Autowired
-    private RepositoryImagen repositoryImage;
+    private PrediccionCacheService prediccionCacheService;
+
+    @Autowired
+    private PrediccionService prediccionService;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
 
     public List<Informe> getAllInformes() {
         return repositoryInforme.findAll();
@@ -29,13 +44,12 @@ public class InformeService {
     }
 
     
+    // El informe se guarda con la prediccion pendiente y la prediccion se calcula en segundo plano
     public Informe addInforme(Informe informe) throws IOException, Exception {
-        String neew_pred = getNewPrediccion(informe);
-        //double neew_pred = Math.random();
-        System.out.println(neew_pred);
-        informe.setPrediccion(((neew_pred)));
-
-        return repositoryInforme.saveAndFlush(informe);
+        informe.setPrediccion(PrediccionService.PREDICCION_PENDIENTE);
+        informe = guardar(informe, "alta");
+        prediccionService.encolar(informe.getImagen().getId(), informe.getId());
+        return informe;
     }
     
 
@@ -45,13 +59,20 @@ public class InformeService {
         // Aquí se muestra un ejemplo básico:
         Informe existingInforme = repositoryInforme.findById(informe.getId()).orElse(null);
         if (existingInforme != null) {
-            existingInforme.setPrediccion(getNewPrediccion(existingInforme));
+            existingInforme.setPrediccion(PrediccionService.PREDICCION_PENDIENTE);
             existingInforme.setContenido(informe.getContenido());
-            repositoryInforme.save(existingInforme);
+            guardar(existingInforme, "actualizacion");
+            prediccionService.encolar(existingInforme.getImagen().getId(), existingInforme.getId());
         }
     }
     
 
+    private Informe guardar(Informe informe, String operacion) {
+        return Observation.createNotStarted("informe.guardado", observationRegistry)
+                .lowCardinalityKeyValue("operacion", operacion)
+                .observe(() -> repositoryInforme.save(informe));
+    }
+
     public void removeInforme(Informe informe) {
         repositoryInforme.delete(informe);
     }
@@ -64,25 +85,32 @@ public class InformeService {
         return repositoryInforme.findByImagenId(id);
     }
 
+    public List<InformeResumen> getResumenInformesImagen(Long id) {
+        return repositoryInforme.findResumenByImagenId(id);
+    }
+
+    public List<InformeResumen> getResumenInformesImagen(Long id, long after, Limit limite) {
+        return repositoryInforme.findResumenByImagenIdAfter(id, after, limite);
+    }
+
+    // Pasa los resumenes de los informes de la imagen a "consumidor" a medida que se leen de la base de datos
+    @Transactional(readOnly = true)
+    public void recorrerResumenInformesImagen(Long id, Consumer<InformeResumen> consumidor) {
+        try (Stream<InformeResumen> resumenes = repositoryInforme.streamResumenByImagenId(id)) {
+            resumenes.forEach(consumidor);
+        }
+    }
+
     
     public String getNewPrediccion(Informe informe) throws IOException, Exception{
-        Map<String, Double> response =  ImagenAPIPredictor
-        .query(ImageUtils.decompressImage(repositoryImage.getReferenceById(informe.getImagen().getId())
-        .getFile_content()));
+        Map<String, Double> response =  prediccionCacheService.predecir(informe.getImagen().getId());
         //informe.setPrediccion((String)response.get("0"));
-        System.out.println("resp");
-        System.out.println( response);
-        double score_0 = response.get("LABEL_0");
-        double score_1 = response.get("LABEL_1");
-        System.out.println("resp");
-        System.out.println( response);
-        String resulString;
-        if (score_0 > score_1){
-            resulString = "Not cancer (label 0),  score: " + score_0;
-        }else{
-            resulString = "Cancer (label 1), score: " + score_1;
-        }
-        return resulString;
+        logPrediccion.atInfo()
+                .addKeyValue("informeId", informe.getId())
+                .addKeyValue("imagenId", informe.getImagen().getId())
+                .addKeyValue("respuesta", response)
+                .log("Prediccion del informe");
+        return PrediccionService.describir(response);
     }
     
 }
@@ -10,6 +10,9 @@ public class MedicoService {
     @Autowired
     RepositoryMedico repositoryMedico;
 
+    @Autowired
+    EntidadCacheService entidadCacheService;
+
     public List<Medico> getAllMedicos(){
         return repositoryMedico.findAll();
     }
@@ -19,7 +22,7 @@ public class MedicoService {
     }
 
     public Medico addMedico(Medico m){
-        return repositoryMedico.saveAndFlush(m);
+        return repositoryMedico.save(m);
     }
 
     public void updateMedico(Medico m){
@@ -28,10 +31,12 @@ public class MedicoService {
 
     public void removeMedico(Medico m){
         repositoryMedico.delete(m);
+        entidadCacheService.medicoBorrado();
     }
 
     public void removeMedicoID(Long id){
         repositoryMedico.deleteById(id);
+        entidadCacheService.medicoBorrado();
     }
 
     public Medico getMedicoByDni(String dni) {
@@ -0,0 +1,88 @@
+package com.uma.example.springuma.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import reactor.core.publisher.Mono;
+
+// Metricas de las llamadas al modelo:
+// - prediccion.llamadas: duracion de cada llamada por modelo, tipo (individual, lote, reactiva) y resultado (ok, error)
+// - prediccion.resultados: imagenes predichas por etiqueta ganadora (LABEL_0, LABEL_1) o error
+// Las llamadas individuales y por lotes son ademas un span de la traza (prediccion.modelo).
+@Component
+public class MetricasPrediccion {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    // Predictor con circuito, bulkhead y reintentos: las metricas y el span cubren la llamada completa
+    @Autowired
+    private PredictorResiliente predictor;
+
+    public Map<String, Double> query(byte[] imagen) throws Exception {
+        return medir("individual", 1, () -> List.of(predictor.query(imagen))).get(0);
+    }
+
+    public List<Map<String, Double>> queryBatch(List<byte[]> imagenes) throws Exception {
+        return medir("lote", imagenes.size(), () -> predictor.queryBatch(imagenes));
+    }
+
+    public Mono<Map<String, Double>> queryReactivo(byte[] imagen) {
+        return Mono.defer(() -> {
+            Timer.Sample muestra = Timer.start(registry);
+            return predictor.queryReactivo(imagen)
+                    .doOnSuccess(resultado -> terminar(muestra, "reactiva", 1, resultado == null ? null : List.of(resultado)))
+                    .doOnError(e -> terminar(muestra, "reactiva", 1, null));
+        });
+    }
+
+    private List<Map<String, Double>> medir(String tipo, int imagenes, Callable<List<Map<String, Double>>> llamada) throws Exception {
+        Timer.Sample muestra = Timer.start(registry);
+        List<Map<String, Double>> resultados = null;
+        try {
+            resultados = Observation.createNotStarted("prediccion.modelo", observationRegistry)
+                    .lowCardinalityKeyValue("modelo", predictor.getModelo())
+                    .lowCardinalityKeyValue("tipo", tipo)
+                    .highCardinalityKeyValue("imagenes", String.valueOf(imagenes))
+                    .observeChecked(llamada::call);
+            return resultados;
+        } finally {
+            terminar(muestra, tipo, imagenes, resultados);
+        }
+    }
+
+    // Sin resultados la llamada ha fallado y todas sus imagenes cuentan como error
+    private void terminar(Timer.Sample muestra, String tipo, int imagenes, List<Map<String, Double>> resultados) {
+        muestra.stop(Timer.builder("prediccion.llamadas")
+                .description("Llamadas al modelo de prediccion")
+                .tags("modelo", predictor.getModelo(), "tipo", tipo, "resultado", resultados == null ? "error" : "ok")
+                .register(registry));
+        if (resultados == null) {
+            registry.counter("prediccion.resultados", "modelo", predictor.getModelo(), "etiqueta", "error").increment(imagenes);
+            return;
+        }
+        for (Map<String, Double> resultado : resultados) {
+            registry.counter("prediccion.resultados", "modelo", predictor.getModelo(), "etiqueta", etiqueta(resultado)).increment();
+        }
+    }
+
+    private static String etiqueta(Map<String, Double> resultado) {
+        Double score_0 = resultado.get("LABEL_0");
+        Double score_1 = resultado.get("LABEL_1");
+        if (score_0 == null || score_1 == null) {
+            return "desconocida";
+        }
+        return score_0 > score_1 ? "LABEL_0" : "LABEL_1";
+    }
+}
@@ -0,0 +1,10 @@
+package com.uma.example.springuma.model;
+
+// La llamada al modelo se ha rechazado sin hacerla: circuito abierto tras fallos repetidos
+// o demasiadas llamadas simultaneas (PredictorResiliente). Los controladores la devuelven como 503.
+public class ModeloNoDisponibleException extends Exception {
+
+    public ModeloNoDisponibleException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,194 @@
+package com.uma.example.springuma.model;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Predictor en proceso con ONNX Runtime: el modelo exportado a ONNX se carga una vez al arrancar y
+// cada lote de imagenes se evalua en una sola llamada, sin red ni arranque en frio del servicio remoto.
+// La sesion es segura para hilos, asi que la comparten todos los workers de prediccion.
+@Component
+@ConditionalOnProperty(name = "prediccion.backend", havingValue = "onnx")
+public class OnnxPredictor implements Predictor {
+
+    @Value("${prediccion.onnx.modelo}")
+    private String rutaModelo;
+
+    // Lado de la imagen de entrada del modelo, en pixeles
+    @Value("${prediccion.onnx.tamano:224}")
+    private int tamano;
+
+    // Normalizacion de cada canal: (pixel / 255 - media) / desviacion
+    @Value("${prediccion.onnx.media:0.5}")
+    private float media;
+
+    @Value("${prediccion.onnx.desviacion:0.5}")
+    private float desviacion;
+
+    // Hilos de cada inferencia; 0 usa todos los nucleos
+    @Value("${prediccion.onnx.hilos:0}")
+    private int hilos;
+
+    private OrtEnvironment entorno;
+    private OrtSession sesion;
+    private String entrada;
+    // true si la entrada es [lote, canales, alto, ancho]; false si es [lote, alto, ancho, canales]
+    private boolean canalesPrimero;
+    // Tamaño de lote fijo del modelo, o -1 si es dinamico. Los lotes mas pequeños (el ultimo de queryBatch,
+    // el de una sola imagen) se completan con imagenes a cero y se descartan sus salidas.
+    private long loteFijo;
+
+    @PostConstruct
+    public void iniciar() throws OrtException {
+        entorno = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions opciones = new OrtSession.SessionOptions()) {
+            opciones.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            opciones.setIntraOpNumThreads(hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors());
+            sesion = entorno.createSession(rutaModelo, opciones);
+        }
+        entrada = sesion.getInputNames().iterator().next();
+        long[] forma = ((TensorInfo) sesion.getInputInfo().get(entrada).getInfo()).getShape();
+        canalesPrimero = forma.length == 4 && forma[1] == 3;
+        loteFijo = forma[0];
+        // Primera inferencia al arrancar para que la primera peticion no pague la inicializacion
+        evaluar(List.of(new float[3 * tamano * tamano]));
+    }
+
+    @PreDestroy
+    public void cerrar() throws OrtException {
+        if (sesion != null) {
+            sesion.close();
+        }
+    }
+
+    @Override
+    public String getModelo() {
+        return "onnx:" + rutaModelo;
+    }
+
+    @Override
+    public Map<String, Double> query(byte[] file_data) throws Exception {
+        return queryBatch(List.of(file_data)).get(0);
+    }
+
+    @Override
+    public List<Map<String, Double>> queryBatch(List<byte[]> files_data) throws Exception {
+        List<float[]> pixeles = new ArrayList<>(files_data.size());
+        for (byte[] file_data : files_data) {
+            pixeles.add(preprocesar(file_data));
+        }
+        List<Map<String, Double>> results = new ArrayList<>(files_data.size());
+        int paso = loteFijo > 0 ? (int) loteFijo : pixeles.size();
+        for (int i = 0; i < pixeles.size(); i += paso) {
+            results.addAll(evaluar(pixeles.subList(i, Math.min(i + paso, pixeles.size()))));
+        }
+        return results;
+    }
+
+    private List<Map<String, Double>> evaluar(List<float[]> lote) throws OrtException {
+        try (OnnxTensor tensor = OnnxTensor.createTensor(entorno, entradaLote(lote), forma(lote.size()));
+                OrtSession.Result resultado = sesion.run(Map.of(entrada, tensor))) {
+            float[][] salida = (float[][]) resultado.get(0).getValue();
+            List<Map<String, Double>> results = new ArrayList<>(lote.size());
+            for (int i = 0; i < lote.size(); i++) {
+                results.add(puntuaciones(salida[i]));
+            }
+            return results;
+        }
+    }
+
+    // Pixeles del lote seguidos, con el relleno a cero hasta loteFijo si el modelo tiene lote fijo
+    FloatBuffer entradaLote(List<float[]> lote) {
+        FloatBuffer buffer = FloatBuffer.allocate(filas(lote.size()) * 3 * tamano * tamano);
+        for (float[] imagen : lote) {
+            buffer.put(imagen);
+        }
+        return buffer.rewind();
+    }
+
+    long[] forma(int imagenes) {
+        int filas = filas(imagenes);
+        return canalesPrimero
+                ? new long[] {filas, 3, tamano, tamano}
+                : new long[] {filas, tamano, tamano, 3};
+    }
+
+    private int filas(int imagenes) {
+        return loteFijo > 0 ? (int) loteFijo : imagenes;
+    }
+
+    // Decodifica la imagen, la escala a tamano x tamano y la pasa a floats normalizados en el orden que espera el modelo
+    float[] preprocesar(byte[] file_data) throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(file_data));
+        if (original == null) {
+            throw new IOException("Formato de imagen no soportado");
+        }
+        BufferedImage escalada = new BufferedImage(tamano, tamano, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = escalada.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(original, 0, 0, tamano, tamano, null);
+        } finally {
+            g.dispose();
+        }
+        int plano = tamano * tamano;
+        int[] rgb = escalada.getRGB(0, 0, tamano, tamano, null, 0, tamano);
+        float[] pixeles = new float[3 * plano];
+        for (int p = 0; p < plano; p++) {
+            int color = rgb[p];
+            for (int c = 0; c < 3; c++) {
+                float valor = (((color >> (16 - 8 * c)) & 0xff) / 255f - media) / desviacion;
+                pixeles[canalesPrimero ? c * plano + p : p * 3 + c] = valor;
+            }
+        }
+        return pixeles;
+    }
+
+    // Convierte la salida del modelo en LABEL_0/LABEL_1: un valor es la probabilidad de cancer (sigmoide),
+    // dos valores son las dos clases (softmax si el modelo devuelve logits)
+    static Map<String, Double> puntuaciones(float[] fila) {
+        double score_0;
+        double score_1;
+        if (fila.length == 1) {
+            score_1 = fila[0] >= 0 && fila[0] <= 1 ? fila[0] : 1 / (1 + Math.exp(-fila[0]));
+            score_0 = 1 - score_1;
+        } else {
+            boolean probabilidades = fila[0] >= 0 && fila[1] >= 0 && Math.abs(fila[0] + fila[1] - 1) < 1e-3;
+            if (probabilidades) {
+                score_0 = fila[0];
+                score_1 = fila[1];
+            } else {
+                double max = Math.max(fila[0], fila[1]);
+                double e0 = Math.exp(fila[0] - max);
+                double e1 = Math.exp(fila[1] - max);
+                score_0 = e0 / (e0 + e1);
+                score_1 = e1 / (e0 + e1);
+            }
+        }
+        Map<String, Double> resultMap = new HashMap<>();
+        resultMap.put("LABEL_0", score_0);
+        resultMap.put("LABEL_1", score_1);
+        return resultMap;
+    }
+}
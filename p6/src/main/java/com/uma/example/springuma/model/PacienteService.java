@@ -1,9 +1,16 @@
 package com.uma.example.springuma.model;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 @Service
 public class PacienteService {
@@ -11,6 +18,12 @@ public class PacienteService {
     @Autowired
     RepositoryPaciente repositoryPaciente; // Cambio el nombre y tipo del repositorio
 
+    @Autowired
+    EntidadCacheService entidadCacheService;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
     public List<Paciente> getAllPacientes(){
         return repositoryPaciente.findAll(); // Cambio el método para devolver una lista de Pacientes
     }
@@ -20,7 +33,7 @@ public class PacienteService {
     }
 
     public Paciente addPaciente(Paciente p){
-        return repositoryPaciente.saveAndFlush(p); // Cambio el tipo de argumento y retorno a Paciente
+        return repositoryPaciente.save(p); // Cambio el tipo de argumento y retorno a Paciente
     }
 
     public void updatePaciente(Paciente p){
@@ -36,13 +49,31 @@ public class PacienteService {
 
     public void removePaciente(Paciente p){
         repositoryPaciente.delete(p); // Cambio a eliminar un Paciente
+        entidadCacheService.pacienteBorrado();
     }
 
     public void removePacienteID(Long id){
         repositoryPaciente.deleteById(id); // Cambio a eliminar un Paciente por ID
+        entidadCacheService.pacienteBorrado();
     }
 
     public List<Paciente> getPacientesMedico(Long id) {
         return repositoryPaciente.findByMedicoId(id);
     }
+
+    public List<Paciente> getPacientesMedico(Long id, long after, Limit limite) {
+        return repositoryPaciente.findByMedicoIdAndIdGreaterThanOrderById(id, after, limite);
+    }
+
+    // Pasa los pacientes del medico a "consumidor" uno a uno, leyendolos con un cursor de base de datos.
+    // Cada paciente se saca del contexto de persistencia tras procesarlo para que la memoria no crezca con el listado.
+    @Transactional(readOnly = true)
+    public void recorrerPacientesMedico(Long id, Consumer<Paciente> consumidor) {
+        try (Stream<Paciente> pacientes = repositoryPaciente.streamByMedicoIdOrderById(id)) {
+            pacientes.forEach(paciente -> {
+                consumidor.accept(paciente);
+                entityManager.detach(paciente);
+            });
+        }
+    }
 }
@@ -0,0 +1,173 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.uma.example.springuma.utils.ImageUtils;
+
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Cache de predicciones por (modelo, SHA-256 del contenido). Para un mismo modelo e imagen la prediccion
+// siempre es la misma, asi que repetirla solo gasta tiempo y cuota de inferencia.
+// Tiene un nivel en memoria (Caffeine) y, opcionalmente, otro persistente en la tabla prediccion_cache.
+@Service
+public class PrediccionCacheService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private ImagenContenidoService imagenContenidoService;
+
+    @Autowired
+    private Predictor predictor;
+
+    @Autowired
+    private MetricasPrediccion metricasPrediccion;
+
+    @Autowired
+    private RepositoryPrediccionCacheada repositoryPrediccionCacheada;
+
+    @Value("${prediccion.cache.tamano-maximo:10000}")
+    private long tamanoMaximo;
+
+    @Value("${prediccion.cache.ttl:P7D}")
+    private Duration ttl;
+
+    @Value("${prediccion.cache.persistente:true}")
+    private boolean persistente;
+
+    private Cache<String, Map<String, Double>> cache;
+
+    @PostConstruct
+    public void iniciar() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // Prediccion de una imagen, consultando antes la cache. Solo lee el contenido si no esta cacheada.
+    public Map<String, Double> predecir(long imagenId) throws IOException, Exception {
+        Lectura lectura = leerSinCachear(imagenId);
+        if (lectura.cacheada != null) {
+            return lectura.cacheada;
+        }
+        Map<String, Double> resultado = metricasPrediccion.query(lectura.imagen);
+        guardar(lectura.hash, resultado);
+        return resultado;
+    }
+
+    // Version reactiva de predecir: las consultas a la cache y la lectura del contenido se hacen en boundedElastic
+    // y la llamada al modelo con Predictor.queryReactivo, sin ocupar un hilo mientras se espera la respuesta
+    public Mono<Map<String, Double>> predecirReactivo(long imagenId) {
+        return Mono.fromCallable(() -> leerSinCachear(imagenId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(lectura -> {
+                    if (lectura.cacheada != null) {
+                        return Mono.just(lectura.cacheada);
+                    }
+                    return metricasPrediccion.queryReactivo(lectura.imagen)
+                            .publishOn(Schedulers.boundedElastic())
+                            .doOnNext(resultado -> guardar(lectura.hash, resultado));
+                });
+    }
+
+    public Optional<Map<String, Double>> buscar(String hash) {
+        String clave = clave(hash);
+        Map<String, Double> resultado = cache.getIfPresent(clave);
+        if (resultado == null && persistente) {
+            resultado = buscarPersistente(hash);
+            if (resultado != null) {
+                cache.put(clave, resultado);
+            }
+        }
+        return Optional.ofNullable(resultado);
+    }
+
+    public void guardar(String hash, Map<String, Double> resultado) {
+        cache.put(clave(hash), resultado);
+        if (persistente) {
+            String json;
+            try {
+                json = MAPPER.writeValueAsString(resultado);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            // Si ya hay fila (caducada o guardada por otra peticion) se actualiza en vez de insertar otra
+            if (repositoryPrediccionCacheada.actualizar(predictor.getModelo(), hash, json, Calendar.getInstance()) > 0) {
+                return;
+            }
+            try {
+                repositoryPrediccionCacheada.save(new PrediccionCacheada(predictor.getModelo(), hash, json));
+            } catch (DataIntegrityViolationException e) {
+                // Otra peticion ha insertado la misma prediccion entre la actualizacion y el insert
+                repositoryPrediccionCacheada.actualizar(predictor.getModelo(), hash, json, Calendar.getInstance());
+            }
+        }
+    }
+
+    public static String hash(byte[] imagen) {
+        return ImageUtils.toHex(ImageUtils.sha256().digest(imagen));
+    }
+
+    private Map<String, Double> buscarPersistente(String hash) {
+        Optional<PrediccionCacheada> guardada = repositoryPrediccionCacheada.findByModeloAndHash(predictor.getModelo(), hash);
+        if (guardada.isEmpty()) {
+            return null;
+        }
+        Calendar caducidad = Calendar.getInstance();
+        caducidad.add(Calendar.SECOND, (int) -ttl.toSeconds());
+        if (guardada.get().getFecha().before(caducidad)) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(guardada.get().getResultado(), new TypeReference<Map<String, Double>>() {});
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    // Prediccion cacheada de la imagen o, si no la hay, su contenido para enviarlo al modelo.
+    // Si la imagen no existe lanza ImagenNoEncontradaException: no se llama al modelo ni se cachea nada.
+    private Lectura leerSinCachear(long imagenId) throws IOException {
+        Lectura lectura = new Lectura();
+        ContenidoImagen contenido = imagenContenidoService.buscar(imagenId)
+                .orElseThrow(() -> new ImagenNoEncontradaException(imagenId));
+        lectura.hash = contenido.getHash();
+        if (lectura.hash == null) {
+            // Imagenes antiguas sin hash guardado
+            lectura.imagen = imagenContenidoService.leer(imagenId);
+            lectura.hash = hash(lectura.imagen);
+        }
+        lectura.cacheada = buscar(lectura.hash).orElse(null);
+        if (lectura.cacheada == null && lectura.imagen == null) {
+            lectura.imagen = imagenContenidoService.leer(imagenId);
+        }
+        return lectura;
+    }
+
+    private String clave(String hash) {
+        return predictor.getModelo() + ":" + hash;
+    }
+
+    private static class Lectura {
+        String hash;
+        Map<String, Double> cacheada;
+        byte[] imagen;
+    }
+}
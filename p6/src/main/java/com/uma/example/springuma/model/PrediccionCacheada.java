@@ -0,0 +1,65 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Nivel persistente de la cache de predicciones: resultado del modelo para un contenido de imagen concreto
+@Entity
+@Table(name = "prediccion_cache", uniqueConstraints = @UniqueConstraint(columnNames = {"modelo", "hash"}))
+public class PrediccionCacheada {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @Column(name = "modelo", nullable = false)
+    private String modelo;
+
+    @Column(name = "hash", nullable = false, length = 64)
+    private String hash;
+
+    // Puntuaciones por etiqueta en JSON
+    @Column(name = "resultado", nullable = false, columnDefinition = "TEXT")
+    private String resultado;
+
+    @Column(name = "fecha", nullable = false)
+    private Calendar fecha;
+
+    public PrediccionCacheada() {
+        // Constructor vacío necesario para JPA
+    }
+
+    public PrediccionCacheada(String modelo, String hash, String resultado) {
+        this.modelo = modelo;
+        this.hash = hash;
+        this.resultado = resultado;
+        this.fecha = Calendar.getInstance();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getModelo() {
+        return modelo;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getResultado() {
+        return resultado;
+    }
+
+    public Calendar getFecha() {
+        return fecha;
+    }
+}
@@ -0,0 +1,96 @@
+package com.uma.example.springuma.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import io.micrometer.observation.Observation;
+
+// Prediccion encolada en PrediccionService. Se consulta por GET /prediccion/{id}.
+public class PrediccionJob {
+
+    public enum Estado { PENDIENTE, EN_CURSO, COMPLETADA, ERROR }
+
+    private final String id;
+    private final long imagenId;
+    private final Long informeId;
+    private final Instant creado;
+    private volatile Estado estado;
+    private volatile String resultado;
+    private volatile String error;
+    private volatile Instant finalizado;
+    // Span del trabajo desde que se encola hasta que termina, hijo del de la peticion que lo encola
+    private volatile Observation observacion = Observation.NOOP;
+
+    public PrediccionJob(long imagenId, Long informeId) {
+        this.id = UUID.randomUUID().toString();
+        this.imagenId = imagenId;
+        this.informeId = informeId;
+        this.creado = Instant.now();
+        this.estado = Estado.PENDIENTE;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getImagenId() {
+        return imagenId;
+    }
+
+    public Long getInformeId() {
+        return informeId;
+    }
+
+    public Instant getCreado() {
+        return creado;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public String getResultado() {
+        return resultado;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getFinalizado() {
+        return finalizado;
+    }
+
+    public boolean isTerminado() {
+        return estado == Estado.COMPLETADA || estado == Estado.ERROR;
+    }
+
+    Observation getObservacion() {
+        return observacion;
+    }
+
+    void setObservacion(Observation observacion) {
+        this.observacion = observacion;
+    }
+
+    void iniciar() {
+        estado = Estado.EN_CURSO;
+    }
+
+    // Vuelve a la cola sin haber llegado al modelo
+    void esperar() {
+        estado = Estado.PENDIENTE;
+    }
+
+    void completar(String resultado) {
+        this.resultado = resultado;
+        this.finalizado = Instant.now();
+        this.estado = Estado.COMPLETADA;
+    }
+
+    void fallar(String error) {
+        this.error = error;
+        this.finalizado = Instant.now();
+        this.estado = Estado.ERROR;
+    }
+}
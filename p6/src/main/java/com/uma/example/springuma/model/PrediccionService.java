@@ -0,0 +1,411 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Cola de predicciones asincronas. Los trabajos se sacan de la cola, se agrupan en lotes y se llama al modelo;
+// asi crear un informe no bloquea el hilo de la peticion durante la inferencia.
+// - Con hilos de plataforma, un numero fijo de workers (prediccion.workers) procesa la cola y limita las llamadas
+//   simultaneas al modelo.
+// - Con hilos virtuales (spring.threads.virtual.enabled) un hilo reparte la cola y cada lote se procesa en su
+//   propio hilo virtual; los lotes en curso los limita un semaforo del tamaño del pool de conexiones al modelo
+//   (prediccion.http.max-conexiones-por-ruta), y mientras no hay permiso los trabajos esperan en la cola.
+// Cada trabajo lleva el span de la peticion que lo encola (prediccion.trabajo): los workers abren su scope para que
+// la lectura de la imagen, la llamada al modelo y el guardado del informe aparezcan en la traza de esa peticion.
+@Service
+public class PrediccionService {
+
+    public static final String PREDICCION_PENDIENTE = "Prediccion pendiente";
+
+    // Logger de las respuestas del modelo; en logback-spring.xml se muestrea y se limita por segundo
+    public static final String LOGGER_RESPUESTAS = "com.uma.example.springuma.prediccion";
+
+    @Autowired
+    private ImagenContenidoService imagenContenidoService;
+
+    @Autowired
+    private MetricasPrediccion metricasPrediccion;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private PrediccionCacheService prediccionCacheService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Hilos virtuales o de plataforma segun spring.threads.virtual.enabled (HilosConfig)
+    @Autowired
+    private ThreadFactory prediccionThreadFactory;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${prediccion.workers:4}")
+    private int workers;
+
+    // Lotes en curso como mucho con hilos virtuales: uno por conexion al modelo, sin pasar de las llamadas
+    // simultaneas que deja el bulkhead de PredictorResiliente
+    @Value("${prediccion.http.max-conexiones-por-ruta:20}")
+    private int maxConexionesPorRuta;
+
+    @Value("${prediccion.resiliencia.llamadas-simultaneas:10}")
+    private int llamadasSimultaneas;
+
+    @Value("${prediccion.cola.capacidad:1000}")
+    private int capacidadCola;
+
+    // Numero maximo de imagenes que se envian en una misma llamada al modelo
+    @Value("${prediccion.lote.maximo:8}")
+    private int loteMaximo;
+
+    // Tiempo que se conservan los trabajos terminados para poder consultarlos. Los mapas de trabajos son caches
+    // de Caffeine que los retiran solos al caducar, sin recorrerlos
+    @Value("${prediccion.jobs.retencion:PT1H}")
+    private Duration retencion;
+
+    // Con prediccion.async=false cada trabajo se procesa en el hilo que lo encola (pruebas)
+    @Value("${prediccion.async:true}")
+    private boolean async;
+
+    private TransactionTemplate transaccion;
+    private BlockingQueue<PrediccionJob> cola;
+    private Cache<String, PrediccionJob> jobs;
+    private Cache<Long, PrediccionJob> jobsPorInforme;
+    private ExecutorService executor;
+    private Thread repartidor;
+    private Semaphore conexiones;
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    @PostConstruct
+    public void iniciar() {
+        transaccion = new TransactionTemplate(transactionManager);
+        jobs = Caffeine.newBuilder().expireAfter(new Caducidad<String>()).build();
+        jobsPorInforme = Caffeine.newBuilder().expireAfter(new Caducidad<Long>()).build();
+        cola = new LinkedBlockingQueue<>(capacidadCola);
+        Gauge.builder("prediccion.cola", cola, BlockingQueue::size)
+                .description("Predicciones esperando en la cola")
+                .register(registry);
+        Gauge.builder("prediccion.en.curso", enCurso, AtomicInteger::get)
+                .description("Predicciones que se estan procesando")
+                .register(registry);
+        if (!async) {
+            return;
+        }
+        if (Threading.VIRTUAL.isActive(environment)) {
+            conexiones = new Semaphore(Math.min(maxConexionesPorRuta, llamadasSimultaneas));
+            repartidor = prediccionThreadFactory.newThread(this::repartirCola);
+            repartidor.start();
+            return;
+        }
+        executor = Executors.newFixedThreadPool(workers, prediccionThreadFactory);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::procesarCola);
+        }
+    }
+
+    @PreDestroy
+    public void parar() throws InterruptedException {
+        if (repartidor != null) {
+            repartidor.interrupt();
+            repartidor.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // Encola la prediccion de una imagen. Si se indica un informe, su prediccion se actualiza al terminar.
+    public PrediccionJob encolar(long imagenId, Long informeId) {
+        PrediccionJob job = new PrediccionJob(imagenId, informeId);
+        Observation observacion = Observation.createNotStarted("prediccion.trabajo", observationRegistry)
+                .highCardinalityKeyValue("imagen.id", String.valueOf(imagenId));
+        if (informeId != null) {
+            observacion.highCardinalityKeyValue("informe.id", String.valueOf(informeId));
+        }
+        job.setObservacion(observacion.start());
+        jobs.put(job.getId(), job);
+        if (informeId != null) {
+            jobsPorInforme.put(informeId, job);
+        }
+        if (!async) {
+            List<PrediccionJob> lote = new ArrayList<>(1);
+            lote.add(job);
+            try {
+                procesarLote(lote);
+            } catch (RuntimeException e) {
+                if (!job.isTerminado()) {
+                    finalizarConError(job, e.getMessage());
+                }
+            }
+        } else if (!cola.offer(job)) {
+            finalizarConError(job, "Cola de predicciones llena");
+        }
+        return job;
+    }
+
+    public Optional<PrediccionJob> getJob(String id) {
+        return Optional.ofNullable(jobs.getIfPresent(id));
+    }
+
+    // Ultima prediccion encolada para un informe
+    public Optional<PrediccionJob> getJobInforme(long informeId) {
+        return Optional.ofNullable(jobsPorInforme.getIfPresent(informeId));
+    }
+
+    public static String describir(Map<String, Double> response) {
+        double score_0 = response.get("LABEL_0");
+        double score_1 = response.get("LABEL_1");
+        String resulString;
+        if (score_0 > score_1){
+            resulString = "Not cancer (label 0),  score: " + score_0;
+        }else{
+            resulString = "Cancer (label 1), score: " + score_1;
+        }
+        return resulString;
+    }
+
+    // Worker de plataforma: saca lotes de la cola y los procesa en su hilo
+    private void procesarCola() {
+        List<PrediccionJob> lote = new ArrayList<>(loteMaximo);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                lote.add(cola.take());
+                cola.drainTo(lote, loteMaximo - 1);
+                procesar(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    // Con hilos virtuales: espera a que haya una conexion libre, saca un lote y lo procesa en un hilo nuevo
+    private void repartirCola() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                conexiones.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            List<PrediccionJob> lote = new ArrayList<>(loteMaximo);
+            try {
+                lote.add(cola.take());
+            } catch (InterruptedException e) {
+                conexiones.release();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            cola.drainTo(lote, loteMaximo - 1);
+            prediccionThreadFactory.newThread(() -> {
+                try {
+                    procesar(lote);
+                } finally {
+                    conexiones.release();
+                }
+            }).start();
+        }
+    }
+
+    private void procesar(List<PrediccionJob> lote) {
+        try {
+            procesarLote(lote);
+        } catch (RuntimeException e) {
+            for (PrediccionJob job : lote) {
+                if (!job.isTerminado()) {
+                    finalizarConError(job, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void procesarLote(List<PrediccionJob> lote) {
+        enCurso.addAndGet(lote.size());
+        try {
+            predecirLote(lote);
+        } finally {
+            enCurso.addAndGet(-lote.size());
+        }
+    }
+
+    private void predecirLote(List<PrediccionJob> lote) {
+        // Solo van al modelo las imagenes cuya prediccion no esta en la cache
+        List<PrediccionJob> preparados = new ArrayList<>(lote.size());
+        List<byte[]> imagenes = new ArrayList<>(lote.size());
+        List<String> hashes = new ArrayList<>(lote.size());
+        for (PrediccionJob job : lote) {
+            job.iniciar();
+            try (Observation.Scope scope = job.getObservacion().openScope()) {
+                String hash = imagenContenidoService.buscar(job.getImagenId()).map(ContenidoImagen::getHash).orElse(null);
+                Optional<Map<String, Double>> cacheada = hash == null ? Optional.empty() : prediccionCacheService.buscar(hash);
+                if (cacheada.isPresent()) {
+                    finalizar(job, cacheada.get());
+                    continue;
+                }
+                byte[] imagen = imagenContenidoService.leer(job.getImagenId());
+                imagenes.add(imagen);
+                hashes.add(hash != null ? hash : PrediccionCacheService.hash(imagen));
+                preparados.add(job);
+            } catch (Exception e) {
+                finalizarConError(job, e.getMessage());
+            }
+        }
+        if (preparados.isEmpty()) {
+            return;
+        }
+        // Una llamada por lotes es de varias peticiones: su span queda en la traza del primer trabajo
+        try (Observation.Scope scope = preparados.get(0).getObservacion().openScope()) {
+            List<Map<String, Double>> respuestas = metricasPrediccion.queryBatch(imagenes);
+            for (int i = 0; i < preparados.size(); i++) {
+                prediccionCacheService.guardar(hashes.get(i), respuestas.get(i));
+                finalizar(preparados.get(i), respuestas.get(i));
+            }
+        } catch (Exception e) {
+            if (devolverSiOcupado(preparados, e)) {
+                return;
+            }
+            if (preparados.size() == 1) {
+                finalizarConError(preparados.get(0), e.getMessage());
+                return;
+            }
+            // Si falla el lote se reintenta imagen a imagen para que un fallo no arrastre al resto
+            for (int i = 0; i < preparados.size(); i++) {
+                if (preparados.get(i).isTerminado()) {
+                    continue;
+                }
+                try (Observation.Scope scope = preparados.get(i).getObservacion().openScope()) {
+                    Map<String, Double> respuesta = metricasPrediccion.query(imagenes.get(i));
+                    prediccionCacheService.guardar(hashes.get(i), respuesta);
+                    finalizar(preparados.get(i), respuesta);
+                } catch (Exception individual) {
+                    if (!devolverSiOcupado(List.of(preparados.get(i)), individual)) {
+                        finalizarConError(preparados.get(i), individual.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    // Si el bulkhead ha rechazado la llamada el modelo no ha fallado, solo estaba ocupado (por ejemplo con
+    // predicciones sincronas): los trabajos vuelven a la cola en lugar de terminar con error
+    private boolean devolverSiOcupado(List<PrediccionJob> trabajos, Exception e) {
+        if (!async || !PredictorResiliente.ocupado(e)) {
+            return false;
+        }
+        for (PrediccionJob job : trabajos) {
+            job.esperar();
+            if (!cola.offer(job)) {
+                finalizarConError(job, "Cola de predicciones llena");
+            }
+        }
+        return true;
+    }
+
+    private void finalizar(PrediccionJob job, Map<String, Double> respuesta) {
+        String resultado = describir(respuesta);
+        guardarPrediccion(job, resultado);
+        job.completar(resultado);
+        retener(job);
+        job.getObservacion().lowCardinalityKeyValue("resultado", "ok").stop();
+    }
+
+    private void finalizarConError(PrediccionJob job, String error) {
+        guardarPrediccion(job, "Error en la prediccion");
+        job.fallar(error);
+        retener(job);
+        job.getObservacion()
+                .lowCardinalityKeyValue("resultado", "error")
+                .highCardinalityKeyValue("error", String.valueOf(error))
+                .stop();
+    }
+
+    private void guardarPrediccion(PrediccionJob job, String prediccion) {
+        if (job.getInformeId() == null) {
+            return;
+        }
+        try (Observation.Scope scope = job.getObservacion().openScope()) {
+            Observation.createNotStarted("informe.guardado", observationRegistry)
+                    .lowCardinalityKeyValue("operacion", "prediccion")
+                    .observe(() -> transaccion.executeWithoutResult(estado -> {
+                        // Con la entidad, y no con un UPDATE masivo, Hibernate solo actualiza este informe en la
+                        // cache de segundo nivel en lugar de vaciar toda la region de informes. Con @DynamicUpdate
+                        // el UPDATE solo lleva la prediccion y no pisa el contenido cambiado mientras se calculaba.
+                        Informe informe = entityManager.find(Informe.class, job.getInformeId());
+                        if (informe != null) {
+                            informe.setPrediccion(prediccion);
+                        }
+                    }));
+        }
+    }
+
+    // Al terminar el trabajo empieza su retencion: se vuelve a escribir para que Caffeine recalcule cuando caduca.
+    // En jobsPorInforme solo si sigue siendo el ultimo trabajo de su informe.
+    private void retener(PrediccionJob job) {
+        jobs.asMap().replace(job.getId(), job, job);
+        if (job.getInformeId() != null) {
+            jobsPorInforme.asMap().replace(job.getInformeId(), job, job);
+        }
+    }
+
+    // Los trabajos pendientes o en curso no caducan; los terminados, "retencion" despues de terminar
+    private class Caducidad<K> implements Expiry<K, PrediccionJob> {
+
+        @Override
+        public long expireAfterCreate(K clave, PrediccionJob job, long ahora) {
+            return job.isTerminado() ? retencion.toNanos() : Long.MAX_VALUE;
+        }
+
+        @Override
+        public long expireAfterUpdate(K clave, PrediccionJob job, long ahora, long restante) {
+            return expireAfterCreate(clave, job, ahora);
+        }
+
+        @Override
+        public long expireAfterRead(K clave, PrediccionJob job, long ahora, long restante) {
+            return restante;
+        }
+    }
+}
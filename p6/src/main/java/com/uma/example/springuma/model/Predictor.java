@@ -0,0 +1,33 @@
+package com.uma.example.springuma.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Backend que calcula la prediccion de una imagen: puntuacion por etiqueta (LABEL_0 = no cancer, LABEL_1 = cancer).
+// Se elige con prediccion.backend: remote (API de Hugging Face), onnx (modelo local) o stub (pruebas).
+public interface Predictor {
+
+    // Identifica el modelo en la cache de predicciones
+    String getModelo();
+
+    Map<String, Double> query(byte[] file_data) throws Exception;
+
+    // Prediccion de varias imagenes; los backends que admitan lotes deben sobrescribirlo para hacer una sola llamada
+    default List<Map<String, Double>> queryBatch(List<byte[]> files_data) throws Exception {
+        List<Map<String, Double>> results = new ArrayList<>(files_data.size());
+        for (byte[] file_data : files_data) {
+            results.add(query(file_data));
+        }
+        return results;
+    }
+
+    // Version no bloqueante de query para la API reactiva. Por defecto la llamada bloqueante se hace
+    // en boundedElastic para no ocupar los hilos del servidor reactivo.
+    default Mono<Map<String, Double>> queryReactivo(byte[] file_data) {
+        return Mono.fromCallable(() -> query(file_data)).subscribeOn(Schedulers.boundedElastic());
+    }
+}
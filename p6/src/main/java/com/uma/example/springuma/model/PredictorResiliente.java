@@ -0,0 +1,276 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+// Llamadas al Predictor configurado con proteccion para cuando el modelo esta lento o caido:
+// - bulkhead: como mucho prediccion.resiliencia.llamadas-simultaneas llamadas a la vez (un lote cuenta como una);
+//   las demas esperan prediccion.resiliencia.espera-llamada y despues se rechazan
+// - circuito: con demasiados fallos o llamadas lentas (incluidas las respuestas "model is currently loading"
+//   de la API) deja de llamar al modelo durante prediccion.resiliencia.circuito.abierto. La duracion de un lote
+//   se reparte entre sus imagenes, asi un lote normal no cuenta como llamada lenta
+// - plazo de cada prediccion (prediccion.resiliencia.plazo): cada intento se ejecuta en otro hilo y se abandona
+//   al agotarse el plazo, contando los reintentos anteriores
+// - reintentos con espera exponencial aleatoria, solo de los errores transitorios (ErrorModeloException.isTransitorio
+//   y errores de red); una respuesta 4xx o ilegible falla a la primera
+// Las llamadas rechazadas por el circuito o el bulkhead fallan al momento con ModeloNoDisponibleException,
+// asi una peticion de prediccion no ocupa un hilo de Tomcat esperando a un modelo que no responde.
+// No es un Predictor para no competir con el backend por la inyeccion: MetricasPrediccion lo usa en su lugar.
+@Component
+public class PredictorResiliente {
+
+    private static final Logger log = LoggerFactory.getLogger(PredictorResiliente.class);
+
+    // Fraccion de aleatoriedad de la espera entre reintentos (0.5 = entre la mitad y vez y media)
+    private static final double JITTER = 0.5;
+
+    @Autowired
+    private Predictor predictor;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // Hilos de los intentos: virtuales o de plataforma segun spring.threads.virtual.enabled (HilosConfig)
+    @Autowired
+    private ThreadFactory prediccionThreadFactory;
+
+    // Plazo de cada prediccion contando los reintentos; el intento en curso se corta al agotarlo
+    @Value("${prediccion.resiliencia.plazo:30s}")
+    private Duration plazo;
+
+    @Value("${prediccion.resiliencia.reintentos:2}")
+    private int reintentos;
+
+    @Value("${prediccion.resiliencia.espera-inicial:500ms}")
+    private Duration esperaInicial;
+
+    @Value("${prediccion.resiliencia.llamadas-simultaneas:10}")
+    private int llamadasSimultaneas;
+
+    @Value("${prediccion.resiliencia.espera-llamada:500ms}")
+    private Duration esperaLlamada;
+
+    // Porcentaje de llamadas fallidas o lentas entre las ultimas "ventana" que abre el circuito
+    @Value("${prediccion.resiliencia.circuito.umbral-fallos:50}")
+    private float umbralFallos;
+
+    @Value("${prediccion.resiliencia.circuito.ventana:20}")
+    private int ventana;
+
+    @Value("${prediccion.resiliencia.circuito.llamadas-minimas:10}")
+    private int llamadasMinimas;
+
+    @Value("${prediccion.resiliencia.circuito.llamada-lenta:10s}")
+    private Duration llamadaLenta;
+
+    @Value("${prediccion.resiliencia.circuito.abierto:30s}")
+    private Duration abierto;
+
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private IntervalFunction esperas;
+    // Como mucho llamadas-simultaneas hilos ocupados: el permiso del bulkhead se devuelve al terminar el intento,
+    // aunque quien lo lanzo ya no lo espere
+    private ExecutorService intentos;
+
+    @PostConstruct
+    public void iniciar() {
+        CircuitBreakerRegistry circuitos = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(umbralFallos)
+                .slowCallRateThreshold(umbralFallos)
+                .slowCallDurationThreshold(llamadaLenta)
+                .slidingWindowSize(ventana)
+                .minimumNumberOfCalls(llamadasMinimas)
+                .waitDurationInOpenState(abierto)
+                // Un rechazo del bulkhead no dice nada de la salud del modelo
+                .ignoreExceptions(BulkheadFullException.class)
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(llamadasSimultaneas)
+                .maxWaitDuration(esperaLlamada)
+                .build());
+        circuitBreaker = circuitos.circuitBreaker("prediccion");
+        bulkhead = bulkheads.bulkhead("prediccion");
+        esperas = IntervalFunction.ofExponentialRandomBackoff(esperaInicial, 2, JITTER);
+        // Los intentos siguen en la traza y con el traceId en los logs de la llamada que los lanza
+        ContextSnapshotFactory snapshots = ContextSnapshotFactory.builder().build();
+        intentos = ContextExecutorService.wrap(Executors.newCachedThreadPool(prediccionThreadFactory), snapshots::captureAll);
+
+        // resilience4j.circuitbreaker.* y resilience4j.bulkhead.* en /actuator/metrics
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitos).bindTo(registry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(registry);
+        circuitBreaker.getEventPublisher().onStateTransition(evento -> log.atWarn()
+                .addKeyValue("transicion", evento.getStateTransition())
+                .log("Cambio de estado del circuito del modelo"));
+    }
+
+    @PreDestroy
+    public void parar() {
+        intentos.shutdownNow();
+    }
+
+    public String getModelo() {
+        return predictor.getModelo();
+    }
+
+    public Map<String, Double> query(byte[] imagen) throws Exception {
+        return llamar(() -> predictor.query(imagen), 1);
+    }
+
+    public List<Map<String, Double>> queryBatch(List<byte[]> imagenes) throws Exception {
+        return llamar(() -> predictor.queryBatch(imagenes), imagenes.size());
+    }
+
+    public Mono<Map<String, Double>> queryReactivo(byte[] imagen) {
+        return Mono.defer(() -> predictor.queryReactivo(imagen))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(Retry.backoff(reintentos, esperaInicial)
+                        .jitter(JITTER)
+                        .filter(PredictorResiliente::transitorio)
+                        .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                .timeout(plazo)
+                .onErrorMap(PredictorResiliente::rechazada, PredictorResiliente::noDisponible);
+    }
+
+    private <T> T llamar(Callable<T> llamada, int imagenes) throws Exception {
+        long limite = System.nanoTime() + plazo.toNanos();
+        for (int intento = 1; ; intento++) {
+            try {
+                return intentar(llamada, imagenes, limite);
+            } catch (CallNotPermittedException | BulkheadFullException e) {
+                throw noDisponible(e);
+            } catch (Exception e) {
+                long espera = esperas.apply(intento);
+                if (!transitorio(e) || intento > reintentos || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(espera) >= limite) {
+                    throw e;
+                }
+                Thread.sleep(espera);
+            }
+        }
+    }
+
+    // Un intento con el permiso del circuito. El circuito recibe la duracion por imagen para que el umbral
+    // de llamada lenta valga igual para una imagen que para un lote.
+    private <T> T intentar(Callable<T> llamada, int imagenes, long limite) throws Exception {
+        circuitBreaker.acquirePermission();
+        long inicio = System.nanoTime();
+        try {
+            T resultado = conPlazo(llamada, limite);
+            circuitBreaker.onSuccess((System.nanoTime() - inicio) / imagenes, TimeUnit.NANOSECONDS);
+            return resultado;
+        } catch (Exception e) {
+            // BulkheadFullException esta en ignoreExceptions: solo devuelve el permiso
+            circuitBreaker.onError((System.nanoTime() - inicio) / imagenes, TimeUnit.NANOSECONDS, e);
+            throw e;
+        }
+    }
+
+    private <T> T conPlazo(Callable<T> llamada, long limite) throws Exception {
+        bulkhead.acquirePermission();
+        // Lo marca el intento al empezar o quien lo abandona si aun no habia empezado: el permiso se devuelve una vez
+        AtomicBoolean empezado = new AtomicBoolean();
+        Future<T> futuro;
+        try {
+            futuro = intentos.submit(() -> {
+                if (!empezado.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return llamada.call();
+                } finally {
+                    bulkhead.onComplete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.onComplete();
+            throw e;
+        }
+        try {
+            return futuro.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandonar(futuro, empezado);
+            throw new TimeoutException("Plazo de la prediccion agotado (" + plazo + ")");
+        } catch (InterruptedException e) {
+            abandonar(futuro, empezado);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private void abandonar(Future<?> futuro, AtomicBoolean empezado) {
+        futuro.cancel(true);
+        if (empezado.compareAndSet(false, true)) {
+            bulkhead.onComplete();
+        }
+    }
+
+    // Errores que pueden salir bien al repetir la llamada: los marcados por el backend y los de red
+    private static boolean transitorio(Throwable e) {
+        if (e instanceof ErrorModeloException error) {
+            return error.isTransitorio();
+        }
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // La llamada no se ha hecho porque todas las llamadas simultaneas estaban ocupadas: repetirla tiene sentido
+    public static boolean ocupado(Exception e) {
+        return e instanceof ModeloNoDisponibleException && e.getCause() instanceof BulkheadFullException;
+    }
+
+    private static boolean rechazada(Throwable e) {
+        return e instanceof CallNotPermittedException || e instanceof BulkheadFullException;
+    }
+
+    private static ModeloNoDisponibleException noDisponible(Throwable e) {
+        return new ModeloNoDisponibleException("Modelo de prediccion no disponible: " + e.getMessage(), e);
+    }
+}
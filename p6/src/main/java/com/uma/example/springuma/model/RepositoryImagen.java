@@ -2,13 +2,52 @@ package com.uma.example.springuma.model;
 
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryImagen extends JpaRepository<Imagen, Long> {
 
+    // El paciente y su medico vienen en la misma consulta (las relaciones son LAZY)
+    @EntityGraph(attributePaths = {"paciente", "paciente.medico"})
     List<Imagen> getByPacienteId(Long id);
 
+    // Proyecciones sin el contenido de la imagen: solo leen columnas de metadatos de imagen y paciente
+    @Query("SELECT new com.uma.example.springuma.model.ImagenResumen(i.id, i.nombre, i.fecha, i.hash, i.tamano, p.id, p.nombre, p.dni) "
+            + "FROM Imagen i LEFT JOIN i.paciente p WHERE p.id = :id ORDER BY i.id")
+    List<ImagenResumen> findResumenByPacienteId(@Param("id") Long id);
+
+    // Paginacion por cursor: los "limit" siguientes resumenes con id mayor que "after"
+    @Query("SELECT new com.uma.example.springuma.model.ImagenResumen(i.id, i.nombre, i.fecha, i.hash, i.tamano, p.id, p.nombre, p.dni) "
+            + "FROM Imagen i LEFT JOIN i.paciente p WHERE p.id = :id AND i.id > :after ORDER BY i.id")
+    List<ImagenResumen> findResumenByPacienteIdAfter(@Param("id") Long id, @Param("after") Long after, Limit limit);
+
+    // Recorrido completo por cursor de base de datos; debe consumirse dentro de una transaccion
+    @Query("SELECT new com.uma.example.springuma.model.ImagenResumen(i.id, i.nombre, i.fecha, i.hash, i.tamano, p.id, p.nombre, p.dni) "
+            + "FROM Imagen i LEFT JOIN i.paciente p WHERE p.id = :id ORDER BY i.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<ImagenResumen> streamResumenByPacienteId(@Param("id") Long id);
+
+    // Todas las imagenes, para la exportacion
+    @Query("SELECT new com.uma.example.springuma.model.ImagenResumen(i.id, i.nombre, i.fecha, i.hash, i.tamano, p.id, p.nombre, p.dni) "
+            + "FROM Imagen i LEFT JOIN i.paciente p ORDER BY i.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<ImagenResumen> streamResumenTodas();
+
+    @Query("SELECT new com.uma.example.springuma.model.ImagenResumen(i.id, i.nombre, i.fecha, i.hash, i.tamano, p.id, p.nombre, p.dni) "
+            + "FROM Imagen i LEFT JOIN i.paciente p WHERE i.id = :id")
+    Optional<ImagenResumen> findResumenById(@Param("id") Long id);
+
 
     // Aquí puedes añadir métodos personalizados si es necesario.
     // Por ejemplo, si quieres buscar imágenes por una propiedad específica:
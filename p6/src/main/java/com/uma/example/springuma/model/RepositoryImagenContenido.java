@@ -0,0 +1,115 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.MetricasImagen;
+
+import io.micrometer.core.annotation.Timed;
+
+// Acceso directo por JDBC al contenido de Imagen (columna file_content y datos de ubicacion).
+// Permite leer el BLOB como stream sin pasar por Hibernate, que cargaria el byte[] completo en memoria.
+// Como no es un repositorio de Spring Data, sus tiempos se miden con @Timed (imagen.contenido.jdbc por metodo).
+@Repository
+@Timed("imagen.contenido.jdbc")
+public class RepositoryImagenContenido {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MetricasImagen metricasImagen;
+
+    public Optional<ContenidoImagen> buscarContenido(long id) {
+        return jdbcTemplate.query("SELECT id, almacen, codec, hash, tamano, fecha, nombre FROM imagen WHERE id = ?",
+                (rs, rowNum) -> {
+                    Timestamp fecha = rs.getTimestamp(6);
+                    return new ContenidoImagen(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getObject(5, Long.class), fecha == null ? null : fecha.toInstant(), rs.getString(7));
+                }, id)
+                .stream().findFirst();
+    }
+
+    public void registrarContenido(ContenidoImagen contenido) {
+        jdbcTemplate.update("UPDATE imagen SET almacen = ?, codec = ?, hash = ?, tamano = ? WHERE id = ?",
+                contenido.getAlmacen(), contenido.getCodec(), contenido.getHash(), contenido.getTamano(), contenido.getId());
+    }
+
+    // Imagenes que comparten el mismo contenido en un almacen direccionado por hash
+    public int contarPorHash(String almacen, String hash, String codec) {
+        Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM imagen WHERE almacen = ? AND hash = ? AND codec = ?",
+                Integer.class, almacen, hash, codec);
+        return total == null ? 0 : total;
+    }
+
+    // Descomprime el contenido de la imagen sobre "out" con el codec guardado en la fila.
+    // Devuelve false si la imagen no existe.
+    public boolean copiarContenido(long id, OutputStream out) throws IOException {
+        return copiarContenido(id, out, 0, Long.MAX_VALUE);
+    }
+
+    // Solo los bytes [desde, desde + cantidad) del contenido descomprimido
+    public boolean copiarContenido(long id, OutputStream out, long desde, long cantidad) throws IOException {
+        try {
+            Boolean encontrada = jdbcTemplate.query("SELECT codec, file_content FROM imagen WHERE id = ?", rs -> {
+                if (!rs.next()) {
+                    return false;
+                }
+                ImageCodec codec = ImageCodec.porNombre(rs.getString(1));
+                try (InputStream in = rs.getBinaryStream(2)) {
+                    if (in != null) {
+                        metricasImagen.descomprimir(BlobImageStore.NOMBRE, in, out, codec, desde, cantidad);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }, id);
+            return Boolean.TRUE.equals(encontrada);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Comprime el stream "in" con "codec" directamente dentro del BLOB de la imagen, sin materializarlo en memoria.
+    // Debe llamarse dentro de la misma transaccion en la que se ha insertado la fila. Devuelve los bytes leidos.
+    public long guardarContenido(long id, InputStream in, ImageCodec codec) throws IOException {
+        try {
+            Long tamano = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+                Blob blob = con.createBlob();
+                try {
+                    long leidos;
+                    try {
+                        leidos = metricasImagen.comprimir(BlobImageStore.NOMBRE, in, blob.setBinaryStream(1), codec);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    try (PreparedStatement ps = con.prepareStatement("UPDATE imagen SET file_content = ?, codec = ? WHERE id = ?")) {
+                        ps.setBlob(1, blob);
+                        ps.setString(2, codec.getNombre());
+                        ps.setLong(3, id);
+                        ps.executeUpdate();
+                    }
+                    return leidos;
+                } finally {
+                    blob.free();
+                }
+            });
+            return tamano == null ? 0 : tamano;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,13 +1,49 @@
 package com.uma.example.springuma.model;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryInforme extends JpaRepository<Informe, Long>{
 
+    // Las relaciones son LAZY: los metodos que devuelven informes completos traen imagen, paciente y medico
+    // en la misma consulta (el contenido de la imagen no se lee nunca)
+    @EntityGraph(attributePaths = {"imagen", "imagen.paciente", "imagen.paciente.medico"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Informe> findByImagenId(Long id);
 
+    @Override
+    @EntityGraph(attributePaths = {"imagen", "imagen.paciente", "imagen.paciente.medico"})
+    Optional<Informe> findById(Long id);
+
+    @Query("SELECT new com.uma.example.springuma.model.InformeResumen(inf.id, inf.prediccion, inf.contenido, "
+            + "i.id, i.nombre, i.fecha, p.id, p.nombre, p.dni) "
+            + "FROM Informe inf JOIN inf.imagen i LEFT JOIN i.paciente p WHERE i.id = :id ORDER BY inf.id")
+    List<InformeResumen> findResumenByImagenId(@Param("id") Long id);
+
+    // Paginacion por cursor: los "limit" siguientes resumenes con id mayor que "after"
+    @Query("SELECT new com.uma.example.springuma.model.InformeResumen(inf.id, inf.prediccion, inf.contenido, "
+            + "i.id, i.nombre, i.fecha, p.id, p.nombre, p.dni) "
+            + "FROM Informe inf JOIN inf.imagen i LEFT JOIN i.paciente p WHERE i.id = :id AND inf.id > :after ORDER BY inf.id")
+    List<InformeResumen> findResumenByImagenIdAfter(@Param("id") Long id, @Param("after") Long after, Limit limit);
+
+    // Recorrido completo por cursor de base de datos; debe consumirse dentro de una transaccion
+    @Query("SELECT new com.uma.example.springuma.model.InformeResumen(inf.id, inf.prediccion, inf.contenido, "
+            + "i.id, i.nombre, i.fecha, p.id, p.nombre, p.dni) "
+            + "FROM Informe inf JOIN inf.imagen i LEFT JOIN i.paciente p WHERE i.id = :id ORDER BY inf.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<InformeResumen> streamResumenByImagenId(@Param("id") Long id);
+
     // https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.query-methods.query-creation
 	// Además de los metodos de consulta basicos, especifico un metodo que busque una cuenta por el CCC
 	// A través del nombre del metodo, spring sabe que tiene que hacer una consulta y devolver la cuenta con el ccc especificado
@@ -1,9 +1,22 @@
 package com.uma.example.springuma.model;
 
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryMedico extends JpaRepository<Medico, Long>{
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Medico getMedicoByDni(String dni);
 
+    // Todos los medicos por cursor de base de datos, para la exportacion; debe consumirse dentro de una transaccion
+    @Query("SELECT m FROM Medico m ORDER BY m.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<Medico> streamTodos();
+
 }
\ No newline at end of file
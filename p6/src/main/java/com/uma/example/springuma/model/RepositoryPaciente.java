@@ -1,13 +1,40 @@
 package com.uma.example.springuma.model;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryPaciente extends JpaRepository<Paciente, Long> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Paciente findByDni(String dni);
 
+    // El medico viene en la misma consulta (la relacion es LAZY)
+    @EntityGraph(attributePaths = "medico")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Paciente> findByMedicoId(Long id);
 
+    // Paginacion por cursor: los "limit" siguientes pacientes con id mayor que "after"
+    @EntityGraph(attributePaths = "medico")
+    List<Paciente> findByMedicoIdAndIdGreaterThanOrderById(Long id, Long after, Limit limit);
+
+    // Recorrido completo por cursor de base de datos; debe consumirse dentro de una transaccion
+    @EntityGraph(attributePaths = "medico")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<Paciente> streamByMedicoIdOrderById(Long id);
+
+    // Todos los pacientes con su medico, para la exportacion
+    @EntityGraph(attributePaths = "medico")
+    @Query("SELECT p FROM Paciente p ORDER BY p.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<Paciente> streamTodos();
+
 }
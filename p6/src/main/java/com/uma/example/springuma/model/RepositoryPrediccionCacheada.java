@@ -0,0 +1,23 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RepositoryPrediccionCacheada extends JpaRepository<PrediccionCacheada, Long> {
+
+    Optional<PrediccionCacheada> findByModeloAndHash(String modelo, String hash);
+
+    // Renueva una prediccion ya guardada (caducada); devuelve 0 si no habia fila para (modelo, hash)
+    @Transactional
+    @Modifying
+    @Query("UPDATE PrediccionCacheada p SET p.resultado = :resultado, p.fecha = :fecha WHERE p.modelo = :modelo AND p.hash = :hash")
+    int actualizar(@Param("modelo") String modelo, @Param("hash") String hash,
+            @Param("resultado") String resultado, @Param("fecha") Calendar fecha);
+
+}
@@ -0,0 +1,67 @@
+package com.uma.example.springuma.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+// Predictor local para pruebas y pruebas de carga: no llama a ningun modelo.
+// Las respuestas se configuran por SHA-256 de la imagen en prediccion.stub.respuestas.<hash>=<LABEL_0>,<LABEL_1>;
+// para el resto de imagenes devuelve una puntuacion fija derivada del hash, siempre la misma para la misma imagen.
+// Con la respuesta "cargando" falla como la API de Hugging Face mientras carga el modelo.
+@Component
+@ConditionalOnProperty(name = "prediccion.backend", havingValue = "stub")
+public class StubPredictor implements Predictor {
+
+    @Autowired
+    private Environment environment;
+
+    // Retardo simulado de cada llamada, en milisegundos
+    @Value("${prediccion.stub.latencia:0}")
+    private long latencia;
+
+    private Map<String, String> respuestas;
+
+    @PostConstruct
+    public void iniciar() {
+        respuestas = Binder.get(environment)
+                .bind("prediccion.stub.respuestas", Bindable.mapOf(String.class, String.class))
+                .orElse(Map.of());
+    }
+
+    @Override
+    public String getModelo() {
+        return "stub";
+    }
+
+    @Override
+    public Map<String, Double> query(byte[] file_data) throws Exception {
+        if (latencia > 0) {
+            Thread.sleep(latencia);
+        }
+        String hash = PrediccionCacheService.hash(file_data);
+        Map<String, Double> resultMap = new HashMap<>();
+        String respuesta = respuestas.get(hash);
+        if ("cargando".equals(respuesta)) {
+            throw new ErrorModeloException("Error from API: Model stub is currently loading", true, null);
+        }
+        if (respuesta != null) {
+            String[] scores = respuesta.split(",");
+            resultMap.put("LABEL_0", Double.parseDouble(scores[0].trim()));
+            resultMap.put("LABEL_1", Double.parseDouble(scores[1].trim()));
+        } else {
+            double score_1 = Integer.parseInt(hash.substring(0, 4), 16) / 65535.0;
+            resultMap.put("LABEL_0", 1 - score_1);
+            resultMap.put("LABEL_1", score_1);
+        }
+        return resultMap;
+    }
+}
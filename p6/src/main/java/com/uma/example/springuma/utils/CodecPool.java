@@ -0,0 +1,64 @@
+package com.uma.example.springuma.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Pool de Deflater/Inflater y buffers de trabajo compartido por todos los hilos.
+// Crear un Deflater por peticion reserva memoria nativa de zlib que solo se libera con end() o con el GC;
+// reutilizandolos (reset() al devolverlos) la compresion no reserva memoria nueva en regimen estable.
+// Si el pool esta lleno al devolver, el objeto sobrante se libera con end().
+public final class CodecPool {
+
+    private static final int MAX_POR_POOL = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final ConcurrentMap<Integer, BlockingQueue<Deflater>> DEFLATERS = new ConcurrentHashMap<>();
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(MAX_POR_POOL);
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(MAX_POR_POOL * 2);
+
+    private CodecPool() {
+    }
+
+    public static Deflater obtenerDeflater(int nivel) {
+        Deflater deflater = deflaters(nivel).poll();
+        return deflater != null ? deflater : new Deflater(nivel);
+    }
+
+    public static void devolverDeflater(Deflater deflater, int nivel) {
+        deflater.reset();
+        if (!deflaters(nivel).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    public static Inflater obtenerInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    public static void devolverInflater(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    // Buffers de ImageUtils.BUFFER_SIZE bytes
+    public static byte[] obtenerBuffer() {
+        byte[] buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new byte[ImageUtils.BUFFER_SIZE];
+    }
+
+    public static void devolverBuffer(byte[] buffer) {
+        if (buffer.length == ImageUtils.BUFFER_SIZE) {
+            BUFFERS.offer(buffer);
+        }
+    }
+
+    private static BlockingQueue<Deflater> deflaters(int nivel) {
+        return DEFLATERS.computeIfAbsent(nivel, n -> new ArrayBlockingQueue<>(MAX_POR_POOL));
+    }
+}
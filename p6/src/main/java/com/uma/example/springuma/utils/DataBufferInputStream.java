@@ -0,0 +1,130 @@
+package com.uma.example.springuma.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+// InputStream sobre un Publisher<DataBuffer> (cuerpo de una peticion reactiva) para el codigo bloqueante que
+// espera un stream, como ImageStore.guardar. Se pide un buffer cada vez que se empieza a leer el anterior,
+// asi que si el lector va lento se deja de leer del socket (backpressure) y nunca hay mas de dos buffers en memoria.
+// Debe leerse desde un hilo que pueda bloquearse, nunca desde los del servidor reactivo.
+public class DataBufferInputStream extends InputStream {
+
+    private static final Object FIN = new Object();
+
+    private final BlockingQueue<Object> cola = new LinkedBlockingQueue<>();
+    private volatile Subscription subscription;
+    private DataBuffer actual;
+    private boolean terminado;
+
+    public DataBufferInputStream(Publisher<DataBuffer> publisher) {
+        Flux.from(publisher).subscribe(new BaseSubscriber<DataBuffer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            @Override
+            protected void hookOnNext(DataBuffer buffer) {
+                cola.add(buffer);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                cola.add(FIN);
+            }
+
+            @Override
+            protected void hookOnError(Throwable error) {
+                cola.add(error);
+            }
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!siguiente()) {
+            return -1;
+        }
+        return actual.read() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!siguiente()) {
+            return -1;
+        }
+        int leidos = Math.min(len, actual.readableByteCount());
+        actual.read(b, off, leidos);
+        return leidos;
+    }
+
+    @Override
+    public int available() {
+        return actual == null ? 0 : actual.readableByteCount();
+    }
+
+    @Override
+    public void close() {
+        if (!terminado && subscription != null) {
+            subscription.cancel();
+        }
+        terminado = true;
+        liberar();
+        Object pendiente;
+        while ((pendiente = cola.poll()) != null) {
+            if (pendiente instanceof DataBuffer buffer) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    // Deja en "actual" un buffer con datos; false al final del cuerpo
+    private boolean siguiente() throws IOException {
+        while (actual == null || actual.readableByteCount() == 0) {
+            liberar();
+            if (terminado) {
+                return false;
+            }
+            Object elemento;
+            try {
+                elemento = cola.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (elemento == FIN) {
+                terminado = true;
+                return false;
+            }
+            if (elemento instanceof Throwable error) {
+                terminado = true;
+                throw new IOException(error.getMessage(), error);
+            }
+            actual = (DataBuffer) elemento;
+            subscription.request(1);
+        }
+        return true;
+    }
+
+    private void liberar() {
+        if (actual != null) {
+            DataBufferUtils.release(actual);
+            actual = null;
+        }
+    }
+}
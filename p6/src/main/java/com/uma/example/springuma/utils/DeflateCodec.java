@@ -0,0 +1,200 @@
+package com.uma.example.springuma.utils;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+// Compresion zlib con nivel configurable. Es el formato con el que se guardaban todas las imagenes antiguas.
+// Los Deflater/Inflater y los buffers salen de CodecPool y se devuelven al cerrar el stream.
+public class DeflateCodec implements ImageCodec {
+
+    public static final String NOMBRE = "deflate";
+
+    public static final DeflateCodec POR_DEFECTO = new DeflateCodec(Deflater.DEFAULT_COMPRESSION);
+
+    private final int nivel;
+
+    public DeflateCodec(int nivel) {
+        this.nivel = nivel;
+    }
+
+    public int getNivel() {
+        return nivel;
+    }
+
+    @Override
+    public String getNombre() {
+        return NOMBRE;
+    }
+
+    @Override
+    public OutputStream comprimir(OutputStream out) {
+        return new PooledDeflaterOutputStream(out, nivel);
+    }
+
+    @Override
+    public InputStream descomprimir(InputStream in) {
+        return new PooledInflaterInputStream(in);
+    }
+
+    private static class PooledDeflaterOutputStream extends FilterOutputStream {
+
+        private final int nivel;
+        private final Deflater deflater;
+        private final byte[] buffer;
+        // Para write(int): el Deflater termina con el antes de volver, asi que se puede reutilizar
+        private final byte[] unByte = new byte[1];
+        private boolean cerrado;
+
+        PooledDeflaterOutputStream(OutputStream out, int nivel) {
+            super(out);
+            this.nivel = nivel;
+            this.deflater = CodecPool.obtenerDeflater(nivel);
+            this.buffer = CodecPool.obtenerBuffer();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            unByte[0] = (byte) b;
+            write(unByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (cerrado) {
+                throw new IOException("Stream cerrado");
+            }
+            if (len == 0) {
+                return;
+            }
+            // El Deflater guarda una referencia a "b": hay que consumirlo entero antes de volver
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                out.close();
+            } finally {
+                CodecPool.devolverDeflater(deflater, nivel);
+                CodecPool.devolverBuffer(buffer);
+            }
+        }
+
+        private void deflate() throws IOException {
+            int count = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+            if (count > 0) {
+                out.write(buffer, 0, count);
+            }
+        }
+    }
+
+    private static class PooledInflaterInputStream extends FilterInputStream {
+
+        private final Inflater inflater;
+        private final byte[] buffer;
+        private final byte[] unByte = new byte[1];
+        private boolean cerrado;
+
+        PooledInflaterInputStream(InputStream in) {
+            super(in);
+            this.inflater = CodecPool.obtenerInflater();
+            this.buffer = CodecPool.obtenerBuffer();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(unByte, 0, 1) == -1 ? -1 : unByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (cerrado) {
+                throw new IOException("Stream cerrado");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int count = inflater.inflate(b, off, len);
+                    if (count > 0) {
+                        return count;
+                    }
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        int leidos = in.read(buffer, 0, buffer.length);
+                        if (leidos == -1) {
+                            throw new EOFException("Fin inesperado del stream zlib");
+                        }
+                        inflater.setInput(buffer, 0, leidos);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] descarte = CodecPool.obtenerBuffer();
+            try {
+                long saltados = 0;
+                while (saltados < n) {
+                    int count = read(descarte, 0, (int) Math.min(descarte.length, n - saltados));
+                    if (count == -1) {
+                        break;
+                    }
+                    saltados += count;
+                }
+                return saltados;
+            } finally {
+                CodecPool.devolverBuffer(descarte);
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return cerrado || inflater.finished() ? 0 : 1;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            try {
+                in.close();
+            } finally {
+                CodecPool.devolverInflater(inflater);
+                CodecPool.devolverBuffer(buffer);
+            }
+        }
+    }
+}
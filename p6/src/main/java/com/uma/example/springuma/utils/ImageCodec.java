@@ -0,0 +1,35 @@
+package com.uma.example.springuma.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Algoritmo con el que se guarda el contenido de una Imagen.
+// El nombre del codec se guarda en cada fila, asi las imagenes se pueden leer aunque cambie la configuracion.
+public interface ImageCodec {
+
+    String getNombre();
+
+    // Devuelve un stream que comprime sobre "out". Al cerrarlo se cierra tambien "out".
+    OutputStream comprimir(OutputStream out) throws IOException;
+
+    // Devuelve un stream que descomprime "in". Al cerrarlo se cierra tambien "in".
+    InputStream descomprimir(InputStream in) throws IOException;
+
+    static ImageCodec porNombre(String nombre) {
+        if (nombre == null) {
+            // Filas anteriores a la columna codec: siempre se comprimian con deflate
+            return DeflateCodec.POR_DEFECTO;
+        }
+        switch (nombre) {
+            case StoreCodec.NOMBRE:
+                return StoreCodec.INSTANCIA;
+            case DeflateCodec.NOMBRE:
+                return DeflateCodec.POR_DEFECTO;
+            case Lz4Codec.NOMBRE:
+                return Lz4Codec.INSTANCIA;
+            default:
+                throw new IllegalArgumentException("Codec de imagen desconocido: " + nombre);
+        }
+    }
+}
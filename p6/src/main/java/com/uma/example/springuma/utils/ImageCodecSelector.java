@@ -0,0 +1,48 @@
+package com.uma.example.springuma.utils;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+// Elige el codec con el que se guarda una imagen nueva segun su tipo de contenido
+@Component
+public class ImageCodecSelector {
+
+    // Tipos que ya vienen comprimidos y se guardan sin recomprimir
+    @Value("${imagen.codec.sin-compresion:image/png,image/jpeg,image/gif,image/webp}")
+    private String[] sinCompresion;
+
+    // Codec para el resto de tipos: none, deflate o lz4
+    @Value("${imagen.codec.por-defecto:deflate}")
+    private String porDefecto;
+
+    @Value("${imagen.codec.deflate.nivel:1}")
+    private int nivelDeflate;
+
+    public ImageCodec paraContentType(String contentType, String nombreFichero) {
+        MediaType tipo = resolverTipo(contentType, nombreFichero);
+        if (tipo != null && Arrays.stream(sinCompresion).anyMatch(t -> MediaType.parseMediaType(t.trim()).includes(tipo))) {
+            return StoreCodec.INSTANCIA;
+        }
+        if (DeflateCodec.NOMBRE.equals(porDefecto)) {
+            return new DeflateCodec(nivelDeflate);
+        }
+        return ImageCodec.porNombre(porDefecto);
+    }
+
+    private MediaType resolverTipo(String contentType, String nombreFichero) {
+        if (contentType != null && !contentType.isBlank() && !MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(contentType)) {
+            try {
+                return MediaType.parseMediaType(contentType);
+            } catch (InvalidMediaTypeException e) {
+                // Cabecera mal formada: como si no la hubiera mandado
+            }
+        }
+        // Si el cliente no manda el tipo, se deduce por la extension del fichero
+        return nombreFichero == null ? null : MediaTypeFactory.getMediaType(nombreFichero).orElse(null);
+    }
+}
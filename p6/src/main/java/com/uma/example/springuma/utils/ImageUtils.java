@@ -1,45 +1,168 @@
 package com.uma.example.springuma.utils;
 
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 public class ImageUtils {
 
+    // Tamaño del buffer usado en las copias por stream (memoria fija por peticion)
+    public static final int BUFFER_SIZE = 8 * 1024;
 
     public static byte[] compressImage(byte[] data) {
-        Deflater deflater = new Deflater();
-        deflater.setLevel(Deflater.BEST_COMPRESSION);
-        deflater.setInput(data);
-        deflater.finish();
+        return compressImage(data, DeflateCodec.POR_DEFECTO);
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4*1024];
-        while (!deflater.finished()) {
-            int size = deflater.deflate(tmp);
-            outputStream.write(tmp, 0, size);
+    public static byte[] compressImage(byte[] data, ImageCodec codec) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            compressImage(new ByteArrayInputStream(data), outputStream, codec);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return outputStream.toByteArray();
+    }
+
+    public static byte[] decompressImage(byte[] data) {
+        return decompressImage(data, DeflateCodec.POR_DEFECTO);
+    }
+
+    public static byte[] decompressImage(byte[] data, ImageCodec codec) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
         try {
-            outputStream.close();
-        } catch (Exception ignored) {
+            decompressImage(new ByteArrayInputStream(data), outputStream, codec);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
         return outputStream.toByteArray();
     }
 
+    // Comprime "in" sobre "out" por bloques, sin copias intermedias del tamaño de la imagen.
+    // "out" queda cerrado al terminar. Devuelve el numero de bytes leidos de "in".
+    public static long compressImage(InputStream in, OutputStream out, ImageCodec codec) throws IOException {
+        try (OutputStream codecStream = codec.comprimir(out)) {
+            return copy(in, codecStream);
+        }
+    }
 
+    // Descomprime "in" sobre "out" a medida que se lee, sin materializar la imagen entera.
+    // "in" queda cerrado al terminar; "out" no se cierra.
+    public static void decompressImage(InputStream in, OutputStream out, ImageCodec codec) throws IOException {
+        decompressImage(in, out, codec, 0, Long.MAX_VALUE);
+    }
 
-    public static byte[] decompressImage(byte[] data) {
-        Inflater inflater = new Inflater();
-        inflater.setInput(data);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4*1024];
+    // Igual, pero solo escribe los bytes [desde, desde + cantidad) del contenido descomprimido: lo anterior
+    // se descomprime y se descarta, y al completar el rango se deja de leer "in" sin descomprimir el resto.
+    public static void decompressImage(InputStream in, OutputStream out, ImageCodec codec, long from, long length) throws IOException {
+        try (InputStream codecStream = codec.descomprimir(in)) {
+            codecStream.skipNBytes(from);
+            copy(codecStream, out, length);
+        }
+    }
+
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        return copy(in, out, Long.MAX_VALUE);
+    }
+
+    // Copia como mucho "limit" bytes de "in"; devuelve los copiados
+    public static long copy(InputStream in, OutputStream out, long limit) throws IOException {
+        byte[] tmp = CodecPool.obtenerBuffer();
         try {
-            while (!inflater.finished()) {
-                int count = inflater.inflate(tmp);
-                outputStream.write(tmp, 0, count);
+            long total = 0;
+            int count;
+            while (total < limit && (count = in.read(tmp, 0, (int) Math.min(tmp.length, limit - total))) != -1) {
+                out.write(tmp, 0, count);
+                total += count;
             }
-            outputStream.close();
-        } catch (Exception ignored) {
+            return total;
+        } finally {
+            CodecPool.devolverBuffer(tmp);
+        }
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    public static BufferedImage readImage(byte[] data) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image == null) {
+            throw new IOException("Formato de imagen no soportado");
+        }
+        return image;
+    }
+
+    // Decodifica solo la region de la imagen, tomando uno de cada "paso" pixeles en cada eje: el resultado
+    // mide ceil(ancho / paso) x ceil(alto / paso) y el resto de la imagen no se guarda en memoria
+    public static BufferedImage readRegion(byte[] data, Rectangle region, int step) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Formato de imagen no soportado");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Escala la imagen a ancho x alto en RGB. Las reducciones grandes se hacen a mitades sucesivas,
+    // que con interpolacion bilineal da mucha mejor calidad que un unico salto.
+    public static BufferedImage scaleImage(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = drawScaled(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return drawScaled(current, width, height);
+    }
+
+    private static BufferedImage drawScaled(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    public static byte[] encodeImage(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, outputStream)) {
+            throw new IOException("Formato de salida no soportado: " + format);
         }
         return outputStream.toByteArray();
     }
@@ -0,0 +1,83 @@
+package com.uma.example.springuma.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+// Filtro de logback para los loggers que empiezan por "prefijo": deja pasar uno de cada "muestreo" eventos
+// y como mucho "porSegundo" por logger y segundo. WARN y ERROR pasan siempre. Se configura en logback-spring.xml
+// y los eventos descartados se publican como logs.descartados (MetricasConfig).
+// Es un filtro de appender y no un TurboFilter porque los eventos de la API fluida de SLF4J (log.atInfo()...)
+// llegan a los appenders sin pasar por los TurboFilter; se aplica en el hilo que escribe el log, antes de encolarlo
+// en el AsyncAppender.
+public class LimiteLogs extends Filter<ILoggingEvent> {
+
+    private String prefijo = "";
+    private long muestreo = 1;
+    private long porSegundo = Long.MAX_VALUE;
+
+    private final Map<String, Contador> contadores = new ConcurrentHashMap<>();
+    private final AtomicLong descartados = new AtomicLong();
+
+    @Override
+    public FilterReply decide(ILoggingEvent evento) {
+        if (!isStarted() || evento.getLevel().isGreaterOrEqual(Level.WARN) || !evento.getLoggerName().startsWith(prefijo)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (contadores.computeIfAbsent(evento.getLoggerName(), nombre -> new Contador()).pasa()) {
+            return FilterReply.NEUTRAL;
+        }
+        descartados.incrementAndGet();
+        return FilterReply.DENY;
+    }
+
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    public String getPrefijo() {
+        return prefijo;
+    }
+
+    public void setPrefijo(String prefijo) {
+        this.prefijo = prefijo;
+    }
+
+    public void setMuestreo(long muestreo) {
+        this.muestreo = muestreo;
+    }
+
+    public void setPorSegundo(long porSegundo) {
+        this.porSegundo = porSegundo;
+    }
+
+    private class Contador {
+
+        private final AtomicLong eventos = new AtomicLong();
+        // Segundo actual y eventos aceptados en el, juntos en un long para actualizarlos a la vez
+        private final AtomicLong ventana = new AtomicLong();
+
+        boolean pasa() {
+            if (muestreo > 1 && eventos.getAndIncrement() % muestreo != 0) {
+                return false;
+            }
+            long segundo = System.currentTimeMillis() / 1000;
+            while (true) {
+                long actual = ventana.get();
+                long aceptados = (actual >>> 32) == (segundo & 0xFFFFFFFFL) ? actual & 0xFFFFFFFFL : 0;
+                if (aceptados >= porSegundo) {
+                    return false;
+                }
+                long nueva = ((segundo & 0xFFFFFFFFL) << 32) | (aceptados + 1);
+                if (ventana.compareAndSet(actual, nueva)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.uma.example.springuma.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+// Compresion LZ4 (formato frame): ratio menor que deflate pero mucho mas rapida al comprimir y descomprimir
+public class Lz4Codec implements ImageCodec {
+
+    public static final String NOMBRE = "lz4";
+
+    public static final Lz4Codec INSTANCIA = new Lz4Codec();
+
+    @Override
+    public String getNombre() {
+        return NOMBRE;
+    }
+
+    @Override
+    public OutputStream comprimir(OutputStream out) throws IOException {
+        // Bloques de 64 KB: el tamaño por defecto (4 MB) reservaria buffers enormes por cada subida
+        return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+    }
+
+    @Override
+    public InputStream descomprimir(InputStream in) throws IOException {
+        return new LZ4FrameInputStream(in);
+    }
+}
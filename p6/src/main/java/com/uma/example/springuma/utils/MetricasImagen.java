@@ -0,0 +1,142 @@
+package com.uma.example.springuma.utils;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+// Compresion y descompresion de ImageUtils midiendo:
+// - imagen.codec: duracion de cada operacion por codec, operacion (comprimir, descomprimir) y almacen
+// - imagen.codec.bytes: bytes originales y comprimidos que pasan por cada codec
+// - imagen.almacen.bytes: tamaño de lo que se escribe y se lee de cada almacen (en el almacen blob, el BLOB)
+// La descompresion es ademas un span de la traza (imagen.descompresion) dentro del de la lectura del almacen.
+@Component
+public class MetricasImagen {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    // Igual que ImageUtils.compressImage: "out" queda cerrado y devuelve los bytes leidos de "in"
+    public long comprimir(String almacen, InputStream in, OutputStream out, ImageCodec codec) throws IOException {
+        ContadorOutputStream comprimidos = new ContadorOutputStream(out);
+        Timer.Sample muestra = Timer.start(registry);
+        long originales = ImageUtils.compressImage(in, comprimidos, codec);
+        muestra.stop(timer(codec, "comprimir", almacen));
+        bytes(codec, "comprimir", originales, comprimidos.total);
+        almacen(almacen, "escritura", comprimidos.total);
+        return originales;
+    }
+
+    // Igual que ImageUtils.decompressImage: "in" queda cerrado y "out" no
+    public void descomprimir(String almacen, InputStream in, OutputStream out, ImageCodec codec) throws IOException {
+        descomprimir(almacen, in, out, codec, 0, Long.MAX_VALUE);
+    }
+
+    // Solo el rango [desde, desde + cantidad), como ImageUtils.decompressImage: los bytes cuentan lo que se ha
+    // leido del almacen y escrito en "out" hasta completar el rango
+    public void descomprimir(String almacen, InputStream in, OutputStream out, ImageCodec codec, long desde, long cantidad) throws IOException {
+        Observation.createNotStarted("imagen.descompresion", observationRegistry)
+                .lowCardinalityKeyValue("codec", codec.getNombre())
+                .lowCardinalityKeyValue("almacen", almacen)
+                .observeChecked(() -> medirDescompresion(almacen, in, out, codec, desde, cantidad));
+    }
+
+    private void medirDescompresion(String almacen, InputStream in, OutputStream out, ImageCodec codec, long desde, long cantidad) throws IOException {
+        ContadorInputStream comprimidos = new ContadorInputStream(in);
+        ContadorOutputStream originales = new ContadorOutputStream(out);
+        Timer.Sample muestra = Timer.start(registry);
+        ImageUtils.decompressImage(comprimidos, originales, codec, desde, cantidad);
+        muestra.stop(timer(codec, "descomprimir", almacen));
+        bytes(codec, "descomprimir", originales.total, comprimidos.total);
+        almacen(almacen, "lectura", comprimidos.total);
+    }
+
+    // Lecturas que no pasan por el codec (ficheros sin comprimir copiados directamente)
+    public void lectura(String almacen, long bytes) {
+        almacen(almacen, "lectura", bytes);
+    }
+
+    private Timer timer(ImageCodec codec, String operacion, String almacen) {
+        return Timer.builder("imagen.codec")
+                .description("Compresion y descompresion de imagenes")
+                .tags("codec", codec.getNombre(), "operacion", operacion, "almacen", almacen)
+                .register(registry);
+    }
+
+    private void bytes(ImageCodec codec, String operacion, long originales, long comprimidos) {
+        registry.counter("imagen.codec.bytes", "codec", codec.getNombre(), "operacion", operacion, "datos", "originales")
+                .increment(originales);
+        registry.counter("imagen.codec.bytes", "codec", codec.getNombre(), "operacion", operacion, "datos", "comprimidos")
+                .increment(comprimidos);
+    }
+
+    private void almacen(String almacen, String operacion, long bytes) {
+        DistributionSummary.builder("imagen.almacen.bytes")
+                .description("Tamaño del contenido escrito y leido de cada almacen")
+                .baseUnit("bytes")
+                .tags("almacen", almacen, "operacion", operacion)
+                .register(registry)
+                .record(bytes);
+    }
+
+    private static class ContadorOutputStream extends FilterOutputStream {
+
+        private long total;
+
+        ContadorOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            total++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            total += len;
+        }
+    }
+
+    private static class ContadorInputStream extends FilterInputStream {
+
+        private long total;
+
+        ContadorInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                total++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int leidos = in.read(b, off, len);
+            if (leidos > 0) {
+                total += leidos;
+            }
+            return leidos;
+        }
+    }
+}
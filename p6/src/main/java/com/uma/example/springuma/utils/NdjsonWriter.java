@@ -0,0 +1,41 @@
+package com.uma.example.springuma.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+// Escritura de respuestas NDJSON (un objeto JSON por linea) a medida que se recorren los resultados,
+// con el mismo ObjectMapper que el resto de respuestas JSON
+@Component
+public class NdjsonWriter {
+
+    // Cada cuantas lineas se vuelca la respuesta al cliente
+    private static final int LINEAS_POR_FLUSH = 100;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public <T> Consumer<T> escritor(OutputStream out) {
+        ObjectWriter writer = objectMapper.writer();
+        int[] lineas = {0};
+        return valor -> {
+            try {
+                out.write(writer.writeValueAsBytes(valor));
+                out.write('\n');
+                // La primera linea sale en cuanto esta lista
+                if (lineas[0]++ % LINEAS_POR_FLUSH == 0) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.uma.example.springuma.utils;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+// Paginacion por cursor (keyset) de los endpoints de listado: ?after=<ultimo id recibido>&limit=<tamaño de pagina>.
+// Cada pagina es una consulta "id > after ORDER BY id LIMIT n", que cuesta lo mismo sea cual sea la pagina.
+// Sin after ni limit se devuelve el listado completo, como antes de paginar.
+@Component
+public class Paginacion {
+
+    // Cabecera con el cursor de la siguiente pagina; no se envia en la ultima
+    public static final String CABECERA_CURSOR = "X-Next-Cursor";
+
+    @Value("${paginacion.limite.por-defecto:100}")
+    private int limitePorDefecto;
+
+    @Value("${paginacion.limite.maximo:1000}")
+    private int limiteMaximo;
+
+    public Limit limite(Long after, Integer limit) {
+        if (limit == null) {
+            return after == null ? Limit.unlimited() : Limit.of(limitePorDefecto);
+        }
+        return Limit.of(Math.max(1, Math.min(limit, limiteMaximo)));
+    }
+
+    // Cursor desde el que empieza la pagina: sin after, desde el principio
+    public long desde(Long after) {
+        return after == null ? 0 : after;
+    }
+
+    // Devuelve la pagina y, si esta llena, el cursor de la siguiente en X-Next-Cursor y en la cabecera Link
+    public <T> ResponseEntity<List<T>> respuesta(List<T> pagina, Limit limite, Function<T, Long> id) {
+        if (limite.isUnlimited() || pagina.isEmpty() || pagina.size() < limite.max()) {
+            return ResponseEntity.ok(pagina);
+        }
+        Long siguiente = id.apply(pagina.get(pagina.size() - 1));
+        String enlace = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", siguiente)
+                .replaceQueryParam("limit", limite.max())
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(CABECERA_CURSOR, String.valueOf(siguiente))
+                .header(HttpHeaders.LINK, "<" + enlace + ">; rel=\"next\"")
+                .body(pagina);
+    }
+}
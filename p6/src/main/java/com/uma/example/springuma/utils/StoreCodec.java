@@ -0,0 +1,27 @@
+package com.uma.example.springuma.utils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Guarda el contenido tal cual. Para formatos ya comprimidos (PNG, JPEG...) comprimir de nuevo no compensa.
+public class StoreCodec implements ImageCodec {
+
+    public static final String NOMBRE = "none";
+
+    public static final StoreCodec INSTANCIA = new StoreCodec();
+
+    @Override
+    public String getNombre() {
+        return NOMBRE;
+    }
+
+    @Override
+    public OutputStream comprimir(OutputStream out) {
+        return out;
+    }
+
+    @Override
+    public InputStream descomprimir(InputStream in) {
+        return in;
+    }
+}
@@ -0,0 +1,142 @@
+package com.uma.example.springuma.integration.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+
+import jakarta.annotation.PostConstruct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+// Transacciones de dos filas: al fallar una fila, las transacciones anteriores ya estan confirmadas
+@TestPropertySource(properties = {
+        "importacion.lote=2",
+        "importacion.transaccion=2"
+})
+public class CargaMasivaIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private WebTestClient client;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+
+        // Crear un medico
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated();
+
+        // Crear un paciente
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated();
+    }
+
+    @Test
+    @DisplayName("Test to verify an unknown medico returns 400 with the failing line and the rows already committed")
+    public void test_importarPacientes_MedicoDesconocido_ReturnsBadRequest() throws Exception {
+        //ARRANGE
+        StringBuilder pacientes = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            // El cuarto paciente es de un medico que no existe
+            Medico medico = new Medico(i == 4 ? "404" : "1", null, null);
+            pacientes.append(objectMapper.writeValueAsString(new Paciente("Paciente " + i, 30, "Cita", "P" + i, medico))).append('\n');
+        }
+
+        //ACT
+        client.post().uri("/paciente/importar")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .bodyValue(pacientes.toString())
+        .exchange()
+        //ASSERT
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("$.error").value(containsString("linea 4"))
+        .jsonPath("$.error").value(containsString("Medico desconocido: 404"))
+        // La primera transaccion (pacientes 1 y 2) se queda; la del tercero y cuarto se deshace
+        .jsonPath("$.importados").isEqualTo(2);
+
+        client.get().uri("/paciente/medico/1")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$", hasSize(3));
+    }
+
+    @Test
+    @DisplayName("Test to verify a zip sent as the request body is imported and an unknown paciente returns 400 with the entry")
+    public void test_importarImagenes_CuerpoZip() throws Exception {
+        //ARRANGE
+        byte[] png = Files.readAllBytes(Path.of("./src/test/resources/healthy.png"));
+
+        //ACT-ASSERT
+        client.post().uri("/imagen/importar")
+        .contentType(MediaType.valueOf("application/zip"))
+        .bodyValue(zip(png, "12345678P/1/a.png", "12345678P/2/b.png", "12345678P/3/c.png"))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.importados").isEqualTo(3);
+
+        client.get().uri("/imagen/3")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(byte[].class).isEqualTo(png);
+
+        client.post().uri("/imagen/importar")
+        .contentType(MediaType.valueOf("application/zip"))
+        .bodyValue(zip(png, "12345678P/4/d.png", "12345678P/5/e.png", "00000000X/6/f.png"))
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("$.error").value(containsString("entrada 00000000X/6/f.png"))
+        .jsonPath("$.importados").isEqualTo(2);
+
+        client.get().uri("/imagen/paciente/1")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$", hasSize(5));
+    }
+
+    private static byte[] zip(byte[] contenido, String... entradas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String entrada : entradas) {
+                zip.putNextEntry(new ZipEntry(entrada));
+                zip.write(contenido);
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
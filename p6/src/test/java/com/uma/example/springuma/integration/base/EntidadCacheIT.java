@@ -0,0 +1,227 @@
+package com.uma.example.springuma.integration.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.io.File;
+import java.time.Duration;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.InformeService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.MedicoService;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PacienteService;
+import com.uma.example.springuma.model.PrediccionJob;
+import com.uma.example.springuma.model.PrediccionService;
+import com.uma.example.springuma.model.RepositoryPaciente;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import reactor.core.publisher.Mono;
+
+// Con la cache de segundo nivel y la de consultas activas como en application.properties de main,
+// un borrado en cascada no deja entidades ni listados antiguos en la cache y guardar una prediccion no vacia
+// la region de informes
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=create"
+})
+public class EntidadCacheIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MedicoService medicoService;
+
+    @Autowired
+    private PacienteService pacienteService;
+
+    @Autowired
+    private InformeService informeService;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private PrediccionService prediccionService;
+
+    private WebTestClient client;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    public void crearDatos() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+
+        Imagen imagen = new Imagen();
+        imagen.setId(1);
+        imagen.setPaciente(paciente);
+
+        Informe informe = new Informe("Cancer", "Foto del cancer", imagen);
+        informe.setId(1);
+
+        // Crear un medico
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated();
+
+        // Crear un paciente
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated();
+
+        // Subir una imagen del paciente
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(new File("./src/test/resources/no_healthty.png")));
+        builder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful();
+
+        // Crear un informe de la imagen
+        client.post().uri("/informe")
+        .contentType(APPLICATION_JSON)
+        .body(BodyInserters.fromValue(informe))
+        .exchange()
+        .expectStatus().isCreated();
+    }
+
+    @AfterEach
+    public void desactivarEstadisticas() {
+        estadisticas.setStatisticsEnabled(false);
+    }
+
+    @Test
+    @DisplayName("Test to verify a deleted medico and its cascaded pacientes are not served from the cache")
+    public void test_borrarMedico_NoDevuelveEntidadesCacheadas() {
+        // Dos lecturas de cada: la segunda sale de la cache
+        for (int i = 0; i < 2; i++) {
+            medicoService.getMedicoByDni("1");
+            pacienteService.getPacientesMedico(1L);
+            repositoryPaciente.findById(1L);
+        }
+        assertCacheUsada();
+
+        //ACT
+        client.delete().uri("/medico/1")
+        .exchange()
+        .expectStatus().isOk();
+
+        //ASSERT
+        assertNull(medicoService.getMedicoByDni("1"));
+        assertTrue(pacienteService.getPacientesMedico(1L).isEmpty());
+        assertTrue(repositoryPaciente.findById(1L).isEmpty());
+        assertTrue(informeService.getInformesImagen(1L).isEmpty());
+        client.get().uri("/medico/dni/1")
+        .exchange()
+        .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Test to verify the informes cascaded from a deleted paciente are not served from the cache")
+    public void test_borrarPaciente_NoDevuelveInformesCacheados() {
+        for (int i = 0; i < 2; i++) {
+            pacienteService.getPacientesMedico(1L);
+            informeService.getInformesImagen(1L);
+            informeService.getInforme(1L);
+        }
+        assertCacheUsada();
+
+        //ACT
+        client.delete().uri("/paciente/1")
+        .exchange()
+        .expectStatus().is2xxSuccessful();
+
+        //ASSERT
+        assertTrue(pacienteService.getPacientesMedico(1L).isEmpty());
+        assertTrue(informeService.getInformesImagen(1L).isEmpty());
+        assertNull(informeService.getInforme(1L));
+        client.get().uri("/informe/imagen/1")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().json("[]");
+    }
+
+    @Test
+    @DisplayName("Test to verify saving a prediction keeps the other cached informes")
+    public void test_prediccion_MantieneOtrosInformesCacheados() {
+        Imagen imagen = new Imagen();
+        imagen.setId(1);
+        client.post().uri("/informe")
+        .contentType(APPLICATION_JSON)
+        .body(BodyInserters.fromValue(new Informe("Cancer", "Segundo informe", imagen)))
+        .exchange()
+        .expectStatus().isCreated();
+        // El informe 1 queda en la cache de entidades
+        buscarInforme(1L);
+
+        //ACT
+        PrediccionJob job = prediccionService.encolar(1, 2L);
+
+        //ASSERT
+        assertEquals(PrediccionJob.Estado.COMPLETADA, job.getEstado());
+        assertEquals("Cancer (label 1), score: 0.6412607431411743", buscarInforme(2L).getPrediccion());
+        // El informe 1 sigue en la cache: se lee sin fallo
+        CacheRegionStatistics region = estadisticas.getDomainDataRegionStatistics(Informe.class.getName());
+        long fallos = region.getMissCount();
+        long aciertos = region.getHitCount();
+        assertEquals("Foto del cancer", buscarInforme(1L).getContenido());
+        assertEquals(fallos, region.getMissCount());
+        assertEquals(aciertos + 1, region.getHitCount());
+    }
+
+    // En su propio EntityManager, como una peticion nueva
+    private Informe buscarInforme(long id) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.find(Informe.class, id);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // Sin aciertos de cache el test no probaria nada
+    private void assertCacheUsada() {
+        assertTrue(estadisticas.getSecondLevelCacheHitCount() > 0, "Aciertos en la cache de entidades");
+        assertTrue(estadisticas.getQueryCacheHitCount() > 0, "Aciertos en la cache de consultas");
+    }
+}
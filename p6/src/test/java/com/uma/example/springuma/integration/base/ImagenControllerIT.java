@@ -1,12 +1,23 @@
 package com.uma.example.springuma.integration.base;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.imageio.ImageIO;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.test.web.reactive.server.FluxExchangeResult;
@@ -16,6 +27,8 @@ import org.springframework.http.MediaType;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.hamcrest.Matchers.hasSize;
 
 import com.uma.example.springuma.model.Medico;
@@ -238,4 +251,230 @@ public class ImagenControllerIT extends AbstractIntegration {
         .expectStatus().isNoContent();
     }
 
+    @Test
+    @DisplayName("Test to verify if the thumbnail and tiles of the imagen are returned")
+    public void test_getMiniaturaYTeselas_ReturnsImages() throws Exception {
+        //ARRANGE
+        // Leer el archivo de imagen
+        File uploadFile = new File("./src/test/resources/healthy.png");
+
+        // Construir el cuerpo de la solicitud multipart
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(uploadFile));
+        builder.part("paciente", paciente);
+
+        // Enviar el archivo usando WebTestClient
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody().returnResult();
+
+        //ACT-ASSERT
+        // la imagen de 50x50 no se amplia en la miniatura
+        client.get().uri("/imagen/1/thumb")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.IMAGE_JPEG)
+            .expectBody(byte[].class)
+            .consumeWith(response -> {
+                try {
+                    BufferedImage miniatura = ImageIO.read(new ByteArrayInputStream(response.getResponseBody()));
+                    assertEquals(50, miniatura.getWidth());
+                    assertEquals(50, miniatura.getHeight());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+        // cabe en una tesela, asi que la piramide tiene un solo nivel
+        client.get().uri("/imagen/1/tiles")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.ancho").isEqualTo(50)
+            .jsonPath("$.alto").isEqualTo(50)
+            .jsonPath("$.niveles").isEqualTo(1);
+
+        client.get().uri("/imagen/1/tile/0/0/0")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.IMAGE_JPEG);
+
+        client.get().uri("/imagen/1/tile/1/0/0")
+            .exchange()
+            .expectStatus().isNotFound();
+
+        client.get().uri("/imagen/2/thumb")
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Test to verify conditional and partial downloads of the imagen")
+    public void test_DownloadImage_ConditionalAndRange() throws Exception {
+        //ARRANGE
+        // Leer el archivo de imagen
+        File uploadFile = new File("./src/test/resources/healthy.png");
+
+        // Construir el cuerpo de la solicitud multipart
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(uploadFile));
+        builder.part("paciente", paciente);
+
+        // Enviar el archivo usando WebTestClient
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody().returnResult();
+
+        byte[] fileContent = Files.readAllBytes(uploadFile.toPath());
+
+        //ACT-ASSERT
+        String etag = client.get().uri("/imagen/1")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals("Accept-Ranges", "bytes")
+            .expectHeader().exists("Last-Modified")
+            .returnResult(byte[].class)
+            .getResponseHeaders().getETag();
+
+        // la copia del cliente sigue siendo valida
+        client.get().uri("/imagen/1")
+            .header("If-None-Match", etag)
+            .exchange()
+            .expectStatus().isNotModified()
+            .expectBody().isEmpty();
+
+        // primeros 100 bytes
+        client.get().uri("/imagen/1")
+            .header("Range", "bytes=0-99")
+            .exchange()
+            .expectStatus().isEqualTo(206)
+            .expectHeader().valueEquals("Content-Range", "bytes 0-99/" + fileContent.length)
+            .expectHeader().contentType(MediaType.IMAGE_PNG)
+            .expectBody(byte[].class)
+            .consumeWith(response -> assertArrayEquals(Arrays.copyOfRange(fileContent, 0, 100), response.getResponseBody()));
+
+        // ultimos 50 bytes
+        client.get().uri("/imagen/1")
+            .header("Range", "bytes=-50")
+            .exchange()
+            .expectStatus().isEqualTo(206)
+            .expectBody(byte[].class)
+            .consumeWith(response -> assertArrayEquals(
+                Arrays.copyOfRange(fileContent, fileContent.length - 50, fileContent.length), response.getResponseBody()));
+
+        // rango fuera de la imagen
+        client.get().uri("/imagen/1")
+            .header("Range", "bytes=" + fileContent.length + "-")
+            .exchange()
+            .expectStatus().isEqualTo(416)
+            .expectHeader().valueEquals("Content-Range", "bytes */" + fileContent.length);
+    }
+
+    @Test
+    @DisplayName("Test to verify the bulk zip export and import of imagenes")
+    public void test_ExportarImportarImagenes_Zip() throws Exception {
+        //ARRANGE
+        File uploadFile = new File("./src/test/resources/healthy.png");
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(uploadFile));
+        builder.part("paciente", paciente);
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful();
+
+        //ACT
+        byte[] zip = client.get().uri("/imagen/exportar")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType("application/zip")
+            .expectBody(byte[].class).returnResult().getResponseBody();
+
+        // cada entrada es <dni>/<id>/<nombre> con la imagen original
+        try (ZipInputStream entradas = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entrada = entradas.getNextEntry();
+            assertEquals(paciente.getDni() + "/1/healthy.png", entrada.getName());
+            assertArrayEquals(Files.readAllBytes(uploadFile.toPath()), entradas.readAllBytes());
+        }
+
+        MultipartBodyBuilder importacion = new MultipartBodyBuilder();
+        importacion.part("archivo", new ByteArrayResource(zip)).filename("imagenes.zip");
+        client.post().uri("/imagen/importar")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(importacion.build()))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.importados").isEqualTo(1);
+
+        //ASSERT
+        client.get().uri("/imagen/paciente/1")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(2)
+            .jsonPath("$[1].nombre").isEqualTo("healthy.png");
+        byte[] importada = client.get().uri("/imagen/2")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(Files.readAllBytes(uploadFile.toPath()), importada);
+    }
+
+    @Test
+    @DisplayName("Test to verify two imagenes with the same content share one file and deleting one keeps the other")
+    public void test_contenidoCompartido_BorrarUnaMantieneLaOtra() throws Exception {
+        //ARRANGE
+        File uploadFile = new File("./src/test/resources/healthy.png");
+        byte[] original = Files.readAllBytes(uploadFile.toPath());
+        // Ruta del contenido en el almacen de pruebas (imagen.store.ruta): <hash[0..2]>/<hash>.none
+        String hash = "6ae68c4e04a7a541eae8c510e170996aff3a6b3037cebd8d2d73ad89a1041506";
+        Path fichero = Path.of("target/imagenes", hash.substring(0, 2), hash + ".none");
+
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(uploadFile));
+        builder.part("paciente", paciente);
+
+        //ACT
+        for (int i = 0; i < 2; i++) {
+            client.post().uri("/imagen")
+            .contentType(MediaType.MULTIPART_FORM_DATA)
+            .body(BodyInserters.fromMultipartData(builder.build()))
+            .exchange()
+            .expectStatus().is2xxSuccessful();
+        }
+
+        //ASSERT
+        // Un solo fichero para las dos imagenes, sin enlaces de respaldo de las subidas
+        assertTrue(Files.exists(fichero));
+        assertEquals(1, Files.getAttribute(fichero, "unix:nlink"));
+        assertFalse(Files.exists(Path.of("target/imagenes/tmp/respaldo-1")));
+        assertFalse(Files.exists(Path.of("target/imagenes/tmp/respaldo-2")));
+
+        client.delete().uri("/imagen/1")
+        .exchange()
+        .expectStatus().isNoContent();
+
+        assertTrue(Files.exists(fichero));
+        byte[] descargada = client.get().uri("/imagen/2")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(original, descargada);
+
+        // Al borrar la ultima imagen que lo usa se borra el fichero
+        client.delete().uri("/imagen/2")
+        .exchange()
+        .expectStatus().isNoContent();
+
+        assertFalse(Files.exists(fichero));
+    }
+
 }
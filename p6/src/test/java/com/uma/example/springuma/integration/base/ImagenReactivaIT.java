@@ -0,0 +1,96 @@
+package com.uma.example.springuma.integration.base;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.uma.example.springuma.config.ServidorReactivo;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+
+import reactor.core.publisher.Mono;
+
+@TestPropertySource(properties = {"reactivo.enabled=true", "reactivo.puerto=0"})
+public class ImagenReactivaIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private ServidorReactivo servidorReactivo;
+
+    @Test
+    @DisplayName("Test to verify the upload, download and prediction of the reactive image API")
+    public void test_SubirDescargarPredecir_Reactivo() throws Exception {
+        //ARRANGE
+        WebTestClient client = WebTestClient.bindToServer().baseUrl("http://localhost:" + port)
+            .responseTimeout(Duration.ofMillis(30000)).build();
+        WebTestClient reactivo = WebTestClient.bindToServer().baseUrl("http://localhost:" + servidorReactivo.getPuerto())
+            .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated();
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated();
+
+        byte[] png = Files.readAllBytes(new File("./src/test/resources/healthy.png").toPath());
+
+        //ACT-ASSERT
+        // PNG: se guarda sin comprimir y se descarga leyendo el fichero de forma asincrona
+        reactivo.post().uri("/imagen/paciente/1?nombre=healthy.png")
+        .contentType(MediaType.IMAGE_PNG)
+        .bodyValue(png)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.id").isEqualTo(1);
+
+        byte[] descargada = reactivo.get().uri("/imagen/1")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentLength(png.length)
+            .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(png, descargada);
+
+        // Sin tipo conocido: se guarda con el codec por defecto y se descomprime al descargarla
+        reactivo.post().uri("/imagen/paciente/1?nombre=healthy.dat")
+        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+        .bodyValue(png)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.id").isEqualTo(2);
+
+        descargada = reactivo.get().uri("/imagen/2")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(byte[].class).returnResult().getResponseBody();
+        assertArrayEquals(png, descargada);
+
+        reactivo.get().uri("/imagen/predict/1")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.prediction").isEqualTo("Not cancer (label 0),  score: 0.984481368213892");
+
+        reactivo.get().uri("/imagen/99")
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+}
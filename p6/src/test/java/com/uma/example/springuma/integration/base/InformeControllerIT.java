@@ -137,7 +137,11 @@ public class InformeControllerIT {
             .exchange() // hace la peticion
             .expectStatus().isOk() // comprueba que el codigo es OK
             .expectHeader().valueEquals("Content-Type", "application/json") // comprueba que el content type es json
-            .expectBody().jsonPath("$", hasSize(1)); // comprueba que la respuesta tenga un array con tamanyo 0
+            .expectBody().jsonPath("$", hasSize(1)).exists() // comprueba que la respuesta tenga un array con tamanyo 0
+            .jsonPath("$.length()").isEqualTo(1)
+            .jsonPath("$[0].contenido").isEqualTo("Foto del cancer")
+            .jsonPath("$[0].imagen.nombre").isEqualTo("no_healthty.png")
+            .jsonPath("$[0].imagen.paciente.id").isEqualTo(1);
     }
 
 
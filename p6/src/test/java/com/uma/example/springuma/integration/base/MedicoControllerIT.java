@@ -11,15 +11,24 @@ import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.MedicoService;
+
+import jakarta.persistence.EntityManagerFactory;
 
 public class MedicoControllerIT extends AbstractIntegration{
 
@@ -28,6 +37,16 @@ public class MedicoControllerIT extends AbstractIntegration{
 
     @Autowired
     private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MedicoService medicoService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     private Medico medico;
     @BeforeEach
     public void setUp() {
@@ -123,5 +142,34 @@ public class MedicoControllerIT extends AbstractIntegration{
         .andExpect(content().contentType("application/json"))
         .andExpect(jsonPath("$.dni").value(medico.getDni()));
     }
-    
+
+    @Test
+    @DisplayName("Test to verify that saving many medicos in one transaction is batched")
+    public void testAddMedicos_InsertaPorLotes() throws Exception {
+      //Arrange
+        int total = 2000;
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+        estadisticas.clear();
+        try {
+            //Act
+            // El camino normal de alta (addMedico -> save), sin el tamaño de lote que fija /medico/importar
+            new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+                for (int i = 0; i < total; i++) {
+                    medicoService.addMedico(new Medico("M" + i, "Medico " + i, "Radiólogo"));
+                }
+            });
+
+            //Assert
+            // hibernate.jdbc.batch_size agrupa las inserciones y los ids se reservan de 50 en 50:
+            // muchas menos sentencias que filas
+            assertEquals(total, estadisticas.getEntityInsertCount());
+            assertTrue(estadisticas.getPrepareStatementCount() < total / 10,
+                "Sentencias preparadas: " + estadisticas.getPrepareStatementCount());
+        } finally {
+            estadisticas.clear();
+            estadisticas.setStatisticsEnabled(false);
+        }
+    }
+
 }
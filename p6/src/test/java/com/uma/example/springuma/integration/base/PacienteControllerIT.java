@@ -4,12 +4,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -22,6 +29,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.Paciente;
 
+// Paginas de dos por defecto para que se note si un listado sin parametros se corta
+@TestPropertySource(properties = "paginacion.limite.por-defecto=2")
 public class PacienteControllerIT extends AbstractIntegration{
 
     @Autowired
@@ -177,5 +186,110 @@ public class PacienteControllerIT extends AbstractIntegration{
             .andExpect(content().contentType("application/json"))
             .andExpect(jsonPath("$[0].nombre").value(paciente.getNombre()));
     }
-    
+
+    @Test
+    @DisplayName("Test to verify the pagination and NDJSON streaming of the patients of a doctor")
+    public void testGetPacientesMedico_PaginatedAndNdjson() throws Exception {
+        // Arrange
+        this.mockMvc.perform(post("/medico")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(medico)))
+                .andExpect(status().isCreated());
+        for (int i = 0; i < 3; i++) {
+            Paciente nuevo = new Paciente("Paciente " + i, 30 + i, "Cita", "1000000" + i + "P", medico);
+            this.mockMvc.perform(post("/paciente")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(nuevo)))
+                    .andExpect(status().isCreated());
+        }
+
+        // Act-Assert
+        // primera pagina: llena, con cursor a la siguiente
+        String cursor = this.mockMvc.perform(get("/paciente/medico/1").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].nombre").value("Paciente 0"))
+            .andExpect(header().exists("X-Next-Cursor"))
+            .andExpect(header().exists("Link"))
+            .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        // ultima pagina: sin cursor
+        this.mockMvc.perform(get("/paciente/medico/1").param("limit", "2").param("after", cursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].nombre").value("Paciente 2"))
+            .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        // con after y sin limit: pagina del tamaño por defecto
+        this.mockMvc.perform(get("/paciente/medico/1").param("after", "0"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(header().exists("X-Next-Cursor"));
+
+        // sin after ni limit: el listado completo, como antes de paginar
+        this.mockMvc.perform(get("/paciente/medico/1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        // NDJSON: un paciente por linea
+        MvcResult resultado = this.mockMvc.perform(get("/paciente/medico/1").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String ndjson = this.mockMvc.perform(asyncDispatch(resultado))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+        String[] lineas = ndjson.trim().split("\n");
+        assertEquals(3, lineas.length);
+        assertEquals("Paciente 1", objectMapper.readValue(lineas[1], Paciente.class).getNombre());
+    }
+
+    @Test
+    @DisplayName("Test to verify the bulk NDJSON import and export of doctors and patients")
+    public void testImportarExportar_Ndjson() throws Exception {
+        // Arrange
+        Medico otro = new Medico("2", "Garcia", "Oncologo");
+        String medicos = objectMapper.writeValueAsString(medico) + "\n" + objectMapper.writeValueAsString(otro) + "\n";
+        // el medico de cada paciente se identifica por su dni, el id de origen se ignora
+        Medico referencia = new Medico("2", null, null);
+        referencia.setId(99);
+        Paciente otroPaciente = new Paciente("Lucia", 41, "Revision", "87654321L", referencia);
+        String pacientes = objectMapper.writeValueAsString(paciente) + "\n" + objectMapper.writeValueAsString(otroPaciente) + "\n";
+
+        // Act
+        this.mockMvc.perform(post("/medico/importar")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(medicos))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importados").value(2));
+        this.mockMvc.perform(post("/paciente/importar")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(pacientes))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importados").value(2));
+
+        // Assert
+        MvcResult resultado = this.mockMvc.perform(get("/paciente/exportar"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String ndjson = this.mockMvc.perform(asyncDispatch(resultado))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+        String[] lineas = ndjson.trim().split("\n");
+        assertEquals(2, lineas.length);
+        Paciente exportado = objectMapper.readValue(lineas[1], Paciente.class);
+        assertEquals("Lucia", exportado.getNombre());
+        assertEquals("2", exportado.getMedico().getDni());
+
+        // un paciente con un medico desconocido no se importa
+        Paciente huerfano = new Paciente("Ana", 50, "Cita", "11111111A", new Medico("404", null, null));
+        this.mockMvc.perform(post("/paciente/importar")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(objectMapper.writeValueAsString(huerfano)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.importados").value(0));
+    }
+
 }
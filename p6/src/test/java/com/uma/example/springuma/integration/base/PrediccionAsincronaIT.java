@@ -0,0 +1,185 @@
+package com.uma.example.springuma.integration.base;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import jakarta.annotation.PostConstruct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// Predicciones en segundo plano. Con Java 21 (mvn -Pjava21) son hilos virtuales: un hilo por lote y como mucho
+// dos lotes a la vez; con Java 17 los cuatro workers de plataforma. El modelo tarda 100 ms y el bulkhead solo
+// deja dos llamadas simultaneas y rechaza las demas a los 10 ms.
+@TestPropertySource(properties = {
+        "prediccion.async=true",
+        "spring.threads.virtual.enabled=true",
+        "prediccion.http.max-conexiones-por-ruta=4",
+        "prediccion.resiliencia.llamadas-simultaneas=2",
+        "prediccion.resiliencia.espera-llamada=10ms",
+        "prediccion.stub.latencia=100"
+})
+public class PrediccionAsincronaIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    private WebTestClient client;
+
+    private Informe informe;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+
+        Imagen imagen = new Imagen();
+        imagen.setId(1);
+        imagen.setNombre("no_healthty");
+        imagen.setPaciente(paciente);
+
+        informe = new Informe("Cancer", "Foto del cancer", imagen);
+
+        // Crear un medico
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated();
+
+        // Crear un paciente
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated();
+
+        // Subir la imagen del informe
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(new File("./src/test/resources/no_healthty.png")));
+        builder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful();
+    }
+
+    @Test
+    @DisplayName("Test to verify queued predictions complete on virtual threads and fill in their informes")
+    public void test_prediccionesEnCola_Completadas() throws InterruptedException {
+        //ACT
+        // Mas informes que lotes simultaneos: los demas esperan en la cola
+        URI[] trabajos = new URI[6];
+        for (int i = 0; i < trabajos.length; i++) {
+            trabajos[i] = client.post().uri("/informe")
+                    .contentType(APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(informe))
+                    .exchange()
+                    .expectStatus().isCreated()
+                    .expectBody().returnResult()
+                    .getResponseHeaders().getLocation();
+            assertNotNull(trabajos[i]);
+        }
+
+        //ASSERT
+        for (URI trabajo : trabajos) {
+            esperarCompletada(trabajo);
+        }
+        client.get().uri("/informe/imagen/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(trabajos.length)
+                .jsonPath("$[*].prediccion").value(everyItem(startsWith("Cancer (label 1)")));
+    }
+
+    @Test
+    @DisplayName("Test to verify predictions rejected by a busy model go back to the queue instead of failing")
+    public void test_modeloOcupado_PrediccionesCompletadas() throws Exception {
+        // Imagenes distintas para que ninguna salga de la cache de predicciones
+        byte[] png = Files.readAllBytes(Path.of("./src/test/resources/no_healthty.png"));
+        URI[] trabajos = new URI[8];
+        for (int i = 0; i < trabajos.length; i++) {
+            byte[] contenido = Arrays.copyOf(png, png.length + 1);
+            contenido[png.length] = (byte) i;
+            MultipartBodyBuilder builder = new MultipartBodyBuilder();
+            builder.part("image", new ByteArrayResource(contenido) {
+                @Override
+                public String getFilename() {
+                    return "imagen.png";
+                }
+            });
+            builder.part("paciente", informe.getImagen().getPaciente());
+            client.post().uri("/imagen")
+            .contentType(MediaType.MULTIPART_FORM_DATA)
+            .body(BodyInserters.fromMultipartData(builder.build()))
+            .exchange()
+            .expectStatus().is2xxSuccessful();
+        }
+
+        //ACT
+        for (int i = 0; i < trabajos.length; i++) {
+            Imagen imagen = new Imagen();
+            imagen.setId(i + 2);
+            trabajos[i] = client.post().uri("/informe")
+                    .contentType(APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(new Informe("Cancer", "Foto del cancer", imagen)))
+                    .exchange()
+                    .expectStatus().isCreated()
+                    .expectBody().returnResult()
+                    .getResponseHeaders().getLocation();
+            assertNotNull(trabajos[i]);
+        }
+
+        //ASSERT
+        for (URI trabajo : trabajos) {
+            esperarCompletada(trabajo);
+        }
+    }
+
+    private void esperarCompletada(URI trabajo) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 20000;
+        while (true) {
+            String estado = new String(client.get().uri(trabajo.getPath())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath("$.estado").isNotEmpty()
+                    .returnResult().getResponseBody());
+            if (estado.contains("\"COMPLETADA\"")) {
+                return;
+            }
+            if (estado.contains("\"ERROR\"") || System.currentTimeMillis() > limite) {
+                throw new AssertionError("La prediccion no se ha completado: " + estado);
+            }
+            Thread.sleep(50);
+        }
+    }
+}
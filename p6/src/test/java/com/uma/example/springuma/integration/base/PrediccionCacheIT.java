@@ -0,0 +1,115 @@
+package com.uma.example.springuma.integration.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Calendar;
+
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PrediccionCacheada;
+import com.uma.example.springuma.model.RepositoryPrediccionCacheada;
+import jakarta.annotation.PostConstruct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+
+// Predicciones cacheadas durante 2 segundos, en memoria y en la tabla prediccion_cache
+@TestPropertySource(properties = "prediccion.cache.ttl=PT2S")
+public class PrediccionCacheIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private RepositoryPrediccionCacheada repositoryPrediccionCacheada;
+
+    private WebTestClient client;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+
+        // Crear un medico
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody().returnResult();
+
+        // Crear un paciente
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody().returnResult();
+
+        // Subir la imagen a predecir
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(new File("./src/test/resources/no_healthty.png")));
+        builder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody().returnResult();
+    }
+
+    @Test
+    @DisplayName("Test to verify a cached prediction skips the model and an expired one is overwritten")
+    public void test_prediccionCacheada_Renovada() throws InterruptedException {
+        //ACT
+        predecir();
+        predecir();
+
+        //ASSERT
+        // La segunda prediccion sale de la cache
+        llamadasAlModelo(1.0);
+        assertEquals(1, repositoryPrediccionCacheada.count());
+
+        //ACT
+        // Al caducar se vuelve a llamar al modelo y se actualiza la fila existente
+        Thread.sleep(2500);
+        Calendar antes = Calendar.getInstance();
+        predecir();
+
+        //ASSERT
+        llamadasAlModelo(2.0);
+        assertEquals(1, repositoryPrediccionCacheada.count());
+        PrediccionCacheada renovada = repositoryPrediccionCacheada.findAll().get(0);
+        assertTrue(!renovada.getFecha().before(antes));
+    }
+
+    private void predecir() {
+        client.get().uri("/imagen/predict/1")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    private void llamadasAlModelo(double llamadas) {
+        client.get().uri("/actuator/metrics/prediccion.llamadas?tag=resultado:ok")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").isEqualTo(llamadas);
+    }
+}
@@ -0,0 +1,233 @@
+package com.uma.example.springuma.integration.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.io.File;
+import java.net.URI;
+import java.time.Duration;
+
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PrediccionJob;
+import com.uma.example.springuma.model.PrediccionService;
+import com.uma.example.springuma.model.RepositoryPrediccionCacheada;
+import jakarta.annotation.PostConstruct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+
+// Con el registro de Prometheus, que Spring Boot desactiva por defecto en los tests
+@AutoConfigureObservability(tracing = false)
+public class PrediccionControllerIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private PrediccionService prediccionService;
+
+    @Autowired
+    private RepositoryPrediccionCacheada repositoryPrediccionCacheada;
+
+    private WebTestClient client;
+
+    private Informe informe;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+
+        Imagen imagen = new Imagen();
+        imagen.setId(1);
+        imagen.setNombre("no_healthty");
+        imagen.setPaciente(paciente);
+
+        informe = new Informe("Cancer", "Foto del cancer", imagen);
+        informe.setId(1);
+
+        // Crear un medico
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody().returnResult();
+
+        // Crear un paciente
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody().returnResult();
+
+        // Subir la imagen del informe
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(new File("./src/test/resources/no_healthty.png")));
+        builder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody().returnResult();
+    }
+
+    @Test
+    @DisplayName("Test to verify the prediction job of a new informe is returned")
+    public void test_getPrediccion_ReturnsJob() {
+        //ACT
+        URI location = client.post().uri("/informe")
+                .contentType(APPLICATION_JSON)
+                .body(BodyInserters.fromValue(informe))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().returnResult()
+                .getResponseHeaders().getLocation();
+
+        //ASSERT
+        assertNotNull(location);
+        client.get().uri(location.getPath())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.imagenId").isEqualTo(1)
+                .jsonPath("$.informeId").isEqualTo(1)
+                // Con prediccion.async=false el trabajo termina antes de responder
+                .jsonPath("$.estado").isEqualTo("COMPLETADA")
+                .jsonPath("$.resultado").isEqualTo("Cancer (label 1), score: 0.6412607431411743");
+
+        client.get().uri("/informe/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.prediccion").isEqualTo("Cancer (label 1), score: 0.6412607431411743");
+    }
+
+    @Test
+    @DisplayName("Test to verify the prediction job is returned by informe")
+    public void test_getPrediccionInforme_ReturnsJob() {
+        client.post().uri("/informe")
+                .contentType(APPLICATION_JSON)
+                .body(BodyInserters.fromValue(informe))
+                .exchange()
+                .expectStatus().isCreated();
+
+        client.get().uri("/informe/1/prediccion")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.informeId").isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Test to verify an unknown prediction job returns not found")
+    public void test_getPrediccion_NotFound() {
+        client.get().uri("/prediccion/no-existe")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Test to verify the prediction, codec and repository metrics are published")
+    public void test_metricas_Prediccion() {
+        //ACT
+        client.post().uri("/informe")
+                .contentType(APPLICATION_JSON)
+                .body(BodyInserters.fromValue(informe))
+                .exchange()
+                .expectStatus().isCreated();
+
+        //ASSERT
+        client.get().uri("/actuator/metrics/prediccion.resultados?tag=etiqueta:LABEL_1&tag=modelo:stub")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.measurements[0].value").isEqualTo(1.0);
+
+        client.get().uri("/actuator/metrics/prediccion.llamadas?tag=resultado:ok")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").isEqualTo(1.0);
+
+        String prometheus = client.get().uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertNotNull(prometheus);
+        assertTrue(prometheus.contains("imagen_codec_seconds_count"));
+        assertTrue(prometheus.contains("imagen_almacen_bytes_count"));
+        assertTrue(prometheus.contains("imagen_contenido_jdbc_seconds_count"));
+        assertTrue(prometheus.contains("spring_data_repository_invocations_seconds_count"));
+        assertTrue(prometheus.contains("prediccion_cola"));
+        assertTrue(prometheus.contains("logs_descartados_total"));
+    }
+
+    @Test
+    @DisplayName("Test to verify every stage of a report prediction is observed for tracing")
+    public void test_etapas_Informe() {
+        //ACT
+        client.post().uri("/informe")
+                .contentType(APPLICATION_JSON)
+                .body(BodyInserters.fromValue(informe))
+                .exchange()
+                .expectStatus().isCreated();
+
+        //ASSERT
+        // La imagen PNG se guarda sin comprimir, asi que su lectura no pasa por imagen.descompresion
+        for (String etapa : new String[] {"imagen.lectura", "prediccion.modelo", "prediccion.trabajo"}) {
+            client.get().uri("/actuator/metrics/" + etapa)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").isEqualTo(1.0);
+        }
+        client.get().uri("/actuator/metrics/informe.guardado?tag=operacion:prediccion")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Test to verify predicting a missing or deleted image returns not found and caches nothing")
+    public void test_prediccionImagenInexistente_NotFound() {
+        client.delete().uri("/imagen/1")
+                .exchange()
+                .expectStatus().is2xxSuccessful();
+
+        //ACT
+        client.get().uri("/imagen/predict/1")
+                .exchange()
+                .expectStatus().isNotFound();
+        client.get().uri("/imagen/predict/99")
+                .exchange()
+                .expectStatus().isNotFound();
+        PrediccionJob job = prediccionService.encolar(99, null);
+
+        //ASSERT
+        assertEquals(PrediccionJob.Estado.ERROR, job.getEstado());
+        assertEquals("Imagen no encontrada: 99", job.getError());
+        assertEquals(0, repositoryPrediccionCacheada.count());
+    }
+}
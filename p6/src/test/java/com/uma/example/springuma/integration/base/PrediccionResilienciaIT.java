@@ -0,0 +1,106 @@
+package com.uma.example.springuma.integration.base;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.time.Duration;
+
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import jakarta.annotation.PostConstruct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+
+// El modelo stub responde a healthy.png como la API mientras carga el modelo.
+// Cada prediccion se intenta dos veces y el circuito se abre tras cuatro llamadas fallidas.
+@TestPropertySource(properties = {
+        "prediccion.stub.respuestas.6ae68c4e04a7a541eae8c510e170996aff3a6b3037cebd8d2d73ad89a1041506=cargando",
+        "prediccion.resiliencia.reintentos=1",
+        "prediccion.resiliencia.espera-inicial=10ms",
+        "prediccion.resiliencia.circuito.ventana=4",
+        "prediccion.resiliencia.circuito.llamadas-minimas=4"
+})
+public class PrediccionResilienciaIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+
+    private WebTestClient client;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico("1", "Grenheir", "Radiólogo");
+        medico.setId(1);
+
+        Paciente paciente = new Paciente("Pedro", 32, "Cita cardiologia", "12345678P", medico);
+        paciente.setId(1);
+
+        // Crear un medico
+        client.post().uri("/medico")
+        .body(Mono.just(medico), Medico.class)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody().returnResult();
+
+        // Crear un paciente
+        client.post().uri("/paciente")
+        .body(Mono.just(paciente), Paciente.class)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody().returnResult();
+
+        // Subir la imagen que el modelo no puede predecir
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new FileSystemResource(new File("./src/test/resources/healthy.png")));
+        builder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(builder.build()))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody().returnResult();
+    }
+
+    @Test
+    @DisplayName("Test to verify predictions fail fast with 503 once the model keeps failing")
+    public void test_circuitoAbierto_ReturnsServiceUnavailable() {
+        //ACT
+        // Dos predicciones con dos intentos cada una: cuatro fallos
+        for (int i = 0; i < 2; i++) {
+            client.get().uri("/imagen/predict/1")
+                    .exchange()
+                    .expectStatus().isEqualTo(500)
+                    .expectBody(String.class)
+                    .consumeWith(respuesta -> assertTrue(respuesta.getResponseBody().contains("currently loading")));
+        }
+
+        //ASSERT
+        client.get().uri("/imagen/predict/1")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody(String.class).isEqualTo("Modelo de prediccion no disponible");
+
+        client.get().uri("/actuator/metrics/resilience4j.circuitbreaker.state?tag=state:open")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.measurements[0].value").isEqualTo(1.0);
+
+        // El resto de la API sigue respondiendo
+        client.get().uri("/paciente/1")
+                .exchange()
+                .expectStatus().isOk();
+    }
+}
@@ -0,0 +1,146 @@
+package com.uma.example.springuma.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.uma.example.springuma.utils.DeflateCodec;
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageUtils;
+import com.uma.example.springuma.utils.Lz4Codec;
+import com.uma.example.springuma.utils.MetricasImagen;
+import com.uma.example.springuma.utils.StoreCodec;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+
+public class FileSystemImageStoreTest {
+
+    @TempDir
+    private Path raiz;
+
+    private FileSystemImageStore store;
+    private MetricasImagen metricasImagen;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    public void init() {
+        metricasImagen = new MetricasImagen();
+        registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(metricasImagen, "registry", registry);
+        ReflectionTestUtils.setField(metricasImagen, "observationRegistry", ObservationRegistry.NOOP);
+        store = new FileSystemImageStore();
+        ReflectionTestUtils.setField(store, "raiz", raiz);
+        ReflectionTestUtils.setField(store, "metricasImagen", metricasImagen);
+    }
+
+    @Test
+    @DisplayName("Test to verify content stored with each codec is read back unchanged, whole and by ranges")
+    public void test_idaYVuelta_TodosLosCodecs() throws IOException {
+        // Varios buffers, la mitad comprimible
+        byte[] datos = new byte[ImageUtils.BUFFER_SIZE * 3 + 17];
+        new Random(7).nextBytes(datos);
+        Arrays.fill(datos, 0, datos.length / 2, (byte) 1);
+
+        long id = 1;
+        for (ImageCodec codec : List.of(StoreCodec.INSTANCIA, DeflateCodec.POR_DEFECTO, Lz4Codec.INSTANCIA)) {
+            //ACT
+            ContenidoImagen contenido = store.guardar(id++, new ByteArrayInputStream(datos), codec);
+            store.confirmar(contenido);
+
+            //ASSERT
+            assertEquals(datos.length, contenido.getTamano().longValue());
+            assertEquals(codec.getNombre(), contenido.getCodec());
+            ByteArrayOutputStream leidos = new ByteArrayOutputStream();
+            store.copiar(contenido, leidos);
+            assertArrayEquals(datos, leidos.toByteArray(), codec.getNombre());
+
+            ByteArrayOutputStream rango = new ByteArrayOutputStream();
+            store.copiar(contenido, rango, ImageUtils.BUFFER_SIZE - 5, 100);
+            assertArrayEquals(Arrays.copyOfRange(datos, ImageUtils.BUFFER_SIZE - 5, ImageUtils.BUFFER_SIZE + 95),
+                    rango.toByteArray(), codec.getNombre());
+
+            // Solo los ficheros sin compresion se pueden servir directamente
+            assertEquals(codec == StoreCodec.INSTANCIA, store.fichero(contenido).isPresent());
+        }
+    }
+
+    @Test
+    @DisplayName("Test to verify a range of compressed content is measured as a completed decompression")
+    public void test_rangoComprimido_DescompresionSinError() throws IOException {
+        List<Throwable> errores = new ArrayList<>();
+        ObservationRegistry observaciones = ObservationRegistry.create();
+        observaciones.observationConfig().observationHandler(new ObservationHandler<Observation.Context>() {
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+
+            @Override
+            public void onError(Observation.Context context) {
+                errores.add(context.getError());
+            }
+        });
+        ReflectionTestUtils.setField(metricasImagen, "observationRegistry", observaciones);
+        byte[] datos = new byte[ImageUtils.BUFFER_SIZE * 4];
+        new Random(7).nextBytes(datos);
+        ContenidoImagen contenido = store.guardar(1, new ByteArrayInputStream(datos), DeflateCodec.POR_DEFECTO);
+        store.confirmar(contenido);
+
+        //ACT
+        ByteArrayOutputStream rango = new ByteArrayOutputStream();
+        store.copiar(contenido, rango, 10, 100);
+
+        //ASSERT
+        assertArrayEquals(Arrays.copyOfRange(datos, 10, 110), rango.toByteArray());
+        assertTrue(errores.isEmpty(), "Errores en la observacion: " + errores);
+        assertEquals(1, registry.get("imagen.codec").tag("operacion", "descomprimir").timer().count());
+        assertEquals(100, registry.get("imagen.codec.bytes").tag("operacion", "descomprimir").tag("datos", "originales")
+                .counter().count());
+        // Se deja de leer al completar el rango: mucho menos que el fichero comprimido entero
+        assertTrue(registry.get("imagen.almacen.bytes").tag("operacion", "lectura").summary().totalAmount() < datos.length / 2);
+    }
+
+    @Test
+    @DisplayName("Test to verify a confirmed upload keeps its content even if the shared file was deleted meanwhile")
+    public void test_confirmar_RestauraFicheroBorrado() throws IOException {
+        byte[] datos = "misma imagen".getBytes();
+        ContenidoImagen primera = store.guardar(1, new ByteArrayInputStream(datos), DeflateCodec.POR_DEFECTO);
+        store.confirmar(primera);
+
+        //ACT
+        // La segunda subida encuentra el fichero, y antes de confirmarse se borra la primera imagen
+        ContenidoImagen segunda = store.guardar(2, new ByteArrayInputStream(datos), DeflateCodec.POR_DEFECTO);
+        store.borrar(primera);
+        store.confirmar(segunda);
+
+        //ASSERT
+        ByteArrayOutputStream leidos = new ByteArrayOutputStream();
+        store.copiar(segunda, leidos);
+        assertArrayEquals(datos, leidos.toByteArray());
+        try (Stream<Path> respaldos = Files.list(raiz.resolve("tmp"))) {
+            assertFalse(respaldos.findAny().isPresent());
+        }
+        assertTrue(Files.exists(raiz.resolve(segunda.getHash().substring(0, 2)).resolve(segunda.getHash() + ".deflate")));
+    }
+}
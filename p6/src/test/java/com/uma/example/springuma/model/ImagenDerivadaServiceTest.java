@@ -0,0 +1,153 @@
+package com.uma.example.springuma.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// ImagenDerivadaService sin contexto de Spring, con una imagen de 600x300: piramide de 150x75, 300x150 y 600x300
+// con teselas de 256 pixeles, de la que solo caben en memoria los dos niveles pequeños
+public class ImagenDerivadaServiceTest {
+
+    private final AtomicInteger lecturas = new AtomicInteger();
+    private final AtomicInteger busquedas = new AtomicInteger();
+    private BufferedImage original;
+    private ImagenDerivadaService servicio;
+
+    @BeforeEach
+    public void crear() throws IOException {
+        original = new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                original.setRGB(x, y, (x * 255 / 600) << 16 | (y * 255 / 300) << 8 | (x + y) % 256);
+            }
+        }
+        byte[] png = ImageUtils.encodeImage(original, "png");
+
+        servicio = new ImagenDerivadaService();
+        ReflectionTestUtils.setField(servicio, "imagenContenidoService", new ImagenContenidoService() {
+            @Override
+            public Optional<ContenidoImagen> buscar(long id) {
+                busquedas.incrementAndGet();
+                return id == 1 ? Optional.of(new ContenidoImagen(1, null, null, null, (long) png.length)) : Optional.empty();
+            }
+
+            @Override
+            public byte[] leer(long id) throws IOException {
+                if (id != 1) {
+                    throw new ImagenNoEncontradaException(id);
+                }
+                lecturas.incrementAndGet();
+                return png;
+            }
+        });
+        ReflectionTestUtils.setField(servicio, "tamanoMiniatura", 128);
+        ReflectionTestUtils.setField(servicio, "tamanoTesela", 256);
+        ReflectionTestUtils.setField(servicio, "formato", "png");
+        ReflectionTestUtils.setField(servicio, "maximoBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(servicio, "maximoPixeles", 100_000L);
+        ReflectionTestUtils.setField(servicio, "maximoNivel", 50_000L);
+        servicio.iniciar();
+    }
+
+    @Test
+    @DisplayName("Test to verify the tiles of every level, including the border ones and those out of the pyramid")
+    public void test_teselas_TodosLosNiveles() throws IOException {
+        //ACT
+        ImagenPiramide piramide = servicio.getPiramide(1).orElseThrow();
+
+        //ASSERT
+        assertEquals(600, piramide.getAncho());
+        assertEquals(300, piramide.getAlto());
+        assertEquals(3, piramide.getNiveles());
+        assertTamano(150, 75, 0, 0, 0);
+        assertTamano(256, 150, 1, 0, 0);
+        assertTamano(44, 150, 1, 1, 0);
+        assertTamano(256, 256, 2, 0, 0);
+        assertTamano(88, 44, 2, 2, 1);
+        assertTrue(servicio.getTesela(1, 0, 1, 0).isEmpty());
+        assertTrue(servicio.getTesela(1, 2, 3, 0).isEmpty());
+        assertTrue(servicio.getTesela(1, 2, 0, 2).isEmpty());
+        assertTrue(servicio.getTesela(1, 3, 0, 0).isEmpty());
+        assertTrue(servicio.getTesela(2, 0, 0, 0).isEmpty());
+        assertTrue(servicio.getPiramide(2).isEmpty());
+        assertTrue(servicio.getMiniatura(2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test to verify the full resolution tiles keep the original pixels")
+    public void test_teselaOriginal_MismosPixeles() throws IOException {
+        //ACT
+        BufferedImage tesela = ImageUtils.readImage(servicio.getTesela(1, 2, 1, 1).orElseThrow());
+
+        //ASSERT
+        for (int y = 0; y < tesela.getHeight(); y++) {
+            for (int x = 0; x < tesela.getWidth(); x++) {
+                assertEquals(original.getRGB(256 + x, 256 + y), tesela.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test to verify a large level tile decodes only its region and the cached tiles do not look up the image")
+    public void test_nivelGrande_UnaLecturaPorTesela() throws IOException {
+        //ACT
+        servicio.getTesela(1, 2, 1, 0).orElseThrow();
+        int lecturasPrimeraTesela = lecturas.get();
+        servicio.getTesela(1, 2, 1, 0).orElseThrow();
+        servicio.getTesela(1, 1, 0, 0).orElseThrow();
+        servicio.getTesela(1, 0, 0, 0).orElseThrow();
+        servicio.getMiniatura(1).orElseThrow();
+        servicio.getTesela(1, 2, 1, 0).orElseThrow();
+        servicio.getMiniatura(1).orElseThrow();
+
+        //ASSERT
+        // Una lectura para la piramide y otra para la region de la tesela; el resto sale de las caches
+        assertEquals(2, lecturasPrimeraTesela);
+        assertEquals(2, lecturas.get());
+        assertEquals(0, busquedas.get());
+        @SuppressWarnings("unchecked")
+        Cache<String, byte[]> derivadas = (Cache<String, byte[]>) ReflectionTestUtils.getField(servicio, "derivadas");
+        assertEquals(Set.of("1:2/1/0", "1:1/0/0", "1:0/0/0", "1:thumb"), derivadas.asMap().keySet());
+        @SuppressWarnings("unchecked")
+        Cache<Long, ?> piramides = (Cache<Long, ?>) ReflectionTestUtils.getField(servicio, "piramides");
+        piramides.cleanUp();
+        assertEquals(1 + 150 * 75 + 300 * 150, piramides.policy().eviction().orElseThrow().weightedSize().getAsLong());
+    }
+
+    @Test
+    @DisplayName("Test to verify a reduced level out of memory is read subsampled from the original")
+    public void test_nivelReducidoFueraDeMemoria_Submuestreado() throws IOException {
+        ReflectionTestUtils.setField(servicio, "maximoNivel", 20_000L);
+
+        //ACT
+        BufferedImage tesela = ImageUtils.readImage(servicio.getTesela(1, 1, 1, 0).orElseThrow());
+
+        //ASSERT
+        assertEquals(44, tesela.getWidth());
+        assertEquals(150, tesela.getHeight());
+        for (int y = 0; y < tesela.getHeight(); y++) {
+            for (int x = 0; x < tesela.getWidth(); x++) {
+                assertEquals(original.getRGB((256 + x) * 2, y * 2), tesela.getRGB(x, y));
+            }
+        }
+    }
+
+    private void assertTamano(int ancho, int alto, int z, int x, int y) throws IOException {
+        BufferedImage tesela = ImageUtils.readImage(servicio.getTesela(1, z, x, y).orElseThrow());
+        assertEquals(ancho, tesela.getWidth(), "Ancho de " + z + "/" + x + "/" + y);
+        assertEquals(alto, tesela.getHeight(), "Alto de " + z + "/" + x + "/" + y);
+    }
+}
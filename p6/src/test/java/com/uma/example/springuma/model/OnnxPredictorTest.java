@@ -0,0 +1,113 @@
+package com.uma.example.springuma.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Preproceso, lotes y salida de OnnxPredictor sin cargar ningun modelo, con imagenes de 2x2 pixeles
+// y sin normalizar (media 0, desviacion 1): cada valor es el canal / 255
+public class OnnxPredictorTest {
+
+    private OnnxPredictor predictor;
+
+    @BeforeEach
+    public void crear() {
+        predictor = new OnnxPredictor();
+        ReflectionTestUtils.setField(predictor, "tamano", 2);
+        ReflectionTestUtils.setField(predictor, "media", 0f);
+        ReflectionTestUtils.setField(predictor, "desviacion", 1f);
+        ReflectionTestUtils.setField(predictor, "loteFijo", -1L);
+    }
+
+    @Test
+    @DisplayName("Test to verify the model output is turned into LABEL_0/LABEL_1 scores")
+    public void test_puntuaciones_ProbabilidadesYLogits() {
+        assertPuntuaciones(0.2, 0.8, OnnxPredictor.puntuaciones(new float[] {0.8f}));
+        assertPuntuaciones(1 - 1 / (1 + Math.exp(-2)), 1 / (1 + Math.exp(-2)), OnnxPredictor.puntuaciones(new float[] {2f}));
+        assertPuntuaciones(0.3, 0.7, OnnxPredictor.puntuaciones(new float[] {0.3f, 0.7f}));
+        double e = Math.exp(2);
+        assertPuntuaciones(1 / (1 + e), e / (1 + e), OnnxPredictor.puntuaciones(new float[] {1f, 3f}));
+    }
+
+    @Test
+    @DisplayName("Test to verify the pixels are laid out channels first or channels last as the model input")
+    public void test_preprocesar_OrdenDeCanales() throws IOException {
+        byte[] png = imagen();
+
+        //ACT
+        ReflectionTestUtils.setField(predictor, "canalesPrimero", true);
+        float[] canalesPrimero = predictor.preprocesar(png);
+        ReflectionTestUtils.setField(predictor, "canalesPrimero", false);
+        float[] canalesUltimo = predictor.preprocesar(png);
+
+        //ASSERT
+        // Pixeles (0,0) rojo, (1,0) verde, (0,1) azul y (1,1) blanco
+        assertArrayEquals(valores(255, 0, 0, 255, 0, 255, 0, 255, 0, 0, 255, 255), canalesPrimero, 1e-6f);
+        assertArrayEquals(valores(255, 0, 0, 0, 255, 0, 0, 0, 255, 255, 255, 255), canalesUltimo, 1e-6f);
+    }
+
+    @Test
+    @DisplayName("Test to verify a smaller batch is padded with zeros to the fixed batch size of the model")
+    public void test_loteFijo_RellenoConCeros() {
+        ReflectionTestUtils.setField(predictor, "canalesPrimero", true);
+        List<float[]> lote = List.of(lleno(1f), lleno(2f), lleno(3f));
+
+        //ACT
+        ReflectionTestUtils.setField(predictor, "loteFijo", 4L);
+        FloatBuffer relleno = predictor.entradaLote(lote);
+        long[] formaFija = predictor.forma(lote.size());
+        ReflectionTestUtils.setField(predictor, "loteFijo", -1L);
+        long[] formaDinamica = predictor.forma(lote.size());
+
+        //ASSERT
+        assertArrayEquals(new long[] {4, 3, 2, 2}, formaFija);
+        assertArrayEquals(new long[] {3, 3, 2, 2}, formaDinamica);
+        float[] valores = new float[relleno.remaining()];
+        relleno.get(valores);
+        assertEquals(4 * 12, valores.length);
+        for (int i = 0; i < valores.length; i++) {
+            assertEquals(i < 3 * 12 ? i / 12 + 1 : 0f, valores[i], "Valor " + i);
+        }
+    }
+
+    private static void assertPuntuaciones(double label0, double label1, Map<String, Double> puntuaciones) {
+        assertEquals(label0, puntuaciones.get("LABEL_0"), 1e-6);
+        assertEquals(label1, puntuaciones.get("LABEL_1"), 1e-6);
+    }
+
+    private static byte[] imagen() throws IOException {
+        BufferedImage imagen = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        imagen.setRGB(0, 0, 0xff0000);
+        imagen.setRGB(1, 0, 0x00ff00);
+        imagen.setRGB(0, 1, 0x0000ff);
+        imagen.setRGB(1, 1, 0xffffff);
+        return ImageUtils.encodeImage(imagen, "png");
+    }
+
+    private static float[] valores(int... canales) {
+        float[] valores = new float[canales.length];
+        for (int i = 0; i < canales.length; i++) {
+            valores[i] = canales[i] / 255f;
+        }
+        return valores;
+    }
+
+    private static float[] lleno(float valor) {
+        float[] pixeles = new float[12];
+        Arrays.fill(pixeles, valor);
+        return pixeles;
+    }
+}
@@ -0,0 +1,127 @@
+package com.uma.example.springuma.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// PredictorResiliente sin contexto de Spring, con un backend que tarda y falla a voluntad
+public class PredictorResilienteTest {
+
+    private final AtomicInteger llamadas = new AtomicInteger();
+    private volatile long latencia;
+    private volatile Exception error;
+
+    private PredictorResiliente resiliente;
+
+    @AfterEach
+    public void parar() {
+        resiliente.parar();
+    }
+
+    @Test
+    @DisplayName("Test to verify a batch of normal images is not counted as a slow call")
+    public void test_loteNormal_NoAbreElCircuito() throws Exception {
+        //ARRANGE
+        crear(Duration.ofSeconds(30), 0, Duration.ofMillis(100));
+        latencia = 30;
+
+        //ACT
+        // Lotes de 8 imagenes de 30 ms: 240 ms por lote, 30 ms por imagen
+        for (int i = 0; i < 4; i++) {
+            resiliente.queryBatch(Collections.nCopies(8, new byte[1]));
+        }
+
+        //ASSERT
+        assertEquals(32, llamadas.get());
+        assertEquals(CircuitBreaker.State.CLOSED, circuito());
+    }
+
+    @Test
+    @DisplayName("Test to verify the deadline cuts the attempt in flight")
+    public void test_plazo_CortaElIntento() {
+        //ARRANGE
+        crear(Duration.ofMillis(200), 2, Duration.ofSeconds(10));
+        latencia = 5000;
+
+        //ACT
+        long inicio = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> resiliente.query(new byte[1]));
+
+        //ASSERT
+        assertTrue(System.nanoTime() - inicio < Duration.ofSeconds(2).toNanos());
+        assertEquals(1, llamadas.get());
+    }
+
+    @Test
+    @DisplayName("Test to verify only transient model errors are retried")
+    public void test_reintentos_SoloTransitorios() {
+        //ARRANGE
+        crear(Duration.ofSeconds(30), 2, Duration.ofSeconds(10));
+
+        //ACT
+        error = new ErrorModeloException("Unexpected response format: <html>", false, null);
+        assertThrows(ErrorModeloException.class, () -> resiliente.query(new byte[1]));
+        int noTransitorio = llamadas.getAndSet(0);
+        error = new ErrorModeloException("Error from API: Model is currently loading", true, null);
+        assertThrows(ErrorModeloException.class, () -> resiliente.query(new byte[1]));
+
+        //ASSERT
+        assertEquals(1, noTransitorio);
+        assertEquals(3, llamadas.get());
+    }
+
+    private void crear(Duration plazo, int reintentos, Duration llamadaLenta) {
+        resiliente = new PredictorResiliente();
+        ReflectionTestUtils.setField(resiliente, "predictor", new Predictor() {
+            @Override
+            public String getModelo() {
+                return "prueba";
+            }
+
+            @Override
+            public Map<String, Double> query(byte[] file_data) throws Exception {
+                llamadas.incrementAndGet();
+                if (latencia > 0) {
+                    Thread.sleep(latencia);
+                }
+                if (error != null) {
+                    throw error;
+                }
+                return Map.of("LABEL_0", 0.9, "LABEL_1", 0.1);
+            }
+        });
+        ReflectionTestUtils.setField(resiliente, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(resiliente, "prediccionThreadFactory", Executors.defaultThreadFactory());
+        ReflectionTestUtils.setField(resiliente, "plazo", plazo);
+        ReflectionTestUtils.setField(resiliente, "reintentos", reintentos);
+        ReflectionTestUtils.setField(resiliente, "esperaInicial", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(resiliente, "llamadasSimultaneas", 10);
+        ReflectionTestUtils.setField(resiliente, "esperaLlamada", Duration.ofMillis(500));
+        ReflectionTestUtils.setField(resiliente, "umbralFallos", 50f);
+        ReflectionTestUtils.setField(resiliente, "ventana", 4);
+        ReflectionTestUtils.setField(resiliente, "llamadasMinimas", 4);
+        ReflectionTestUtils.setField(resiliente, "llamadaLenta", llamadaLenta);
+        ReflectionTestUtils.setField(resiliente, "abierto", Duration.ofSeconds(30));
+        resiliente.iniciar();
+    }
+
+    private CircuitBreaker.State circuito() {
+        return ((CircuitBreaker) ReflectionTestUtils.getField(resiliente, "circuitBreaker")).getState();
+    }
+}
@@ -0,0 +1,154 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DeflateCodecTest {
+
+    private final DeflateCodec codec = DeflateCodec.POR_DEFECTO;
+
+    @Test
+    @DisplayName("Test to verify contents of every size survive a compress/decompress round trip")
+    public void test_idaYVuelta_TodosLosTamanos() throws IOException {
+        // Vacio, un byte, exactamente un buffer, y varios buffers poco y muy comprimibles
+        for (byte[] datos : List.of(new byte[0], new byte[] { 42 }, aleatorios(ImageUtils.BUFFER_SIZE),
+                aleatorios(ImageUtils.BUFFER_SIZE * 3 + 123), new byte[ImageUtils.BUFFER_SIZE * 5])) {
+            //ACT
+            byte[] comprimidos = comprimir(datos);
+
+            //ASSERT
+            assertArrayEquals(datos, descomprimir(comprimidos), "Tamaño " + datos.length);
+            // Es zlib normal: lo lee el InflaterInputStream del JDK
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(comprimidos))) {
+                assertArrayEquals(datos, in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test to verify the single byte read and write methods")
+    public void test_byteAByte_IdaYVuelta() throws IOException {
+        byte[] datos = aleatorios(ImageUtils.BUFFER_SIZE + 10);
+
+        //ACT
+        ByteArrayOutputStream comprimidos = new ByteArrayOutputStream();
+        try (OutputStream out = codec.comprimir(comprimidos)) {
+            for (byte b : datos) {
+                out.write(b);
+            }
+        }
+        ByteArrayOutputStream leidos = new ByteArrayOutputStream();
+        try (InputStream in = codec.descomprimir(new ByteArrayInputStream(comprimidos.toByteArray()))) {
+            for (int b = in.read(); b != -1; b = in.read()) {
+                leidos.write(b);
+            }
+        }
+
+        //ASSERT
+        assertArrayEquals(datos, leidos.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Test to verify a truncated stream fails instead of returning partial content")
+    public void test_streamTruncado_LanzaEOF() throws IOException {
+        byte[] comprimidos = comprimir(aleatorios(ImageUtils.BUFFER_SIZE * 2));
+        byte[] truncados = Arrays.copyOf(comprimidos, comprimidos.length / 2);
+
+        //ACT-ASSERT
+        assertThrows(EOFException.class, () -> descomprimir(truncados));
+    }
+
+    @Test
+    @DisplayName("Test to verify the Inflater and Deflater go back to the pool after an exception")
+    public void test_errores_DevuelvenAlPool() throws IOException {
+        //ARRANGE
+        byte[] truncados = Arrays.copyOf(comprimir(aleatorios(ImageUtils.BUFFER_SIZE * 2)), 100);
+        InputStream in = codec.descomprimir(new ByteArrayInputStream(truncados));
+        Inflater inflater = (Inflater) ReflectionTestUtils.getField(in, "inflater");
+        // Nivel propio para no compartir el pool con otros tests
+        int nivel = 3;
+        OutputStream out = new DeflateCodec(nivel).comprimir(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disco lleno");
+            }
+        });
+        Deflater deflater = (Deflater) ReflectionTestUtils.getField(out, "deflater");
+
+        //ACT
+        try (in) {
+            assertThrows(EOFException.class, in::readAllBytes);
+        }
+        assertThrows(IOException.class, () -> {
+            try (out) {
+                out.write(aleatorios(ImageUtils.BUFFER_SIZE * 2));
+            }
+        });
+
+        //ASSERT
+        assertTrue(enPool(inflater, CodecPool::obtenerInflater, CodecPool::devolverInflater));
+        assertTrue(enPool(deflater, () -> CodecPool.obtenerDeflater(nivel), d -> CodecPool.devolverDeflater(d, nivel)));
+        // Los devueltos tras el error estan como nuevos
+        assertEquals(0, inflater.getTotalIn());
+        assertEquals(0, deflater.getTotalIn());
+    }
+
+    private byte[] comprimir(byte[] datos) throws IOException {
+        ByteArrayOutputStream comprimidos = new ByteArrayOutputStream();
+        try (OutputStream out = codec.comprimir(comprimidos)) {
+            out.write(datos);
+        }
+        return comprimidos.toByteArray();
+    }
+
+    private byte[] descomprimir(byte[] comprimidos) throws IOException {
+        try (InputStream in = codec.descomprimir(new ByteArrayInputStream(comprimidos))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] aleatorios(int tamano) {
+        byte[] datos = new byte[tamano];
+        new Random(tamano).nextBytes(datos);
+        return datos;
+    }
+
+    // Saca objetos del pool hasta encontrar "buscado" y los devuelve todos
+    private static <T> boolean enPool(T buscado, Supplier<T> obtener, Consumer<T> devolver) {
+        List<T> sacados = new ArrayList<>();
+        try {
+            for (int i = 0; i < 64; i++) {
+                T obtenido = obtener.get();
+                sacados.add(obtenido);
+                if (obtenido == buscado) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            sacados.forEach(devolver);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Con la configuracion por defecto de application.properties
+public class ImageCodecSelectorTest {
+
+    private ImageCodecSelector selector;
+
+    @BeforeEach
+    public void init() {
+        selector = new ImageCodecSelector();
+        ReflectionTestUtils.setField(selector, "sinCompresion", new String[] { "image/png", "image/jpeg", "image/gif", "image/webp" });
+        ReflectionTestUtils.setField(selector, "porDefecto", DeflateCodec.NOMBRE);
+        ReflectionTestUtils.setField(selector, "nivelDeflate", 1);
+    }
+
+    @Test
+    @DisplayName("Test to verify already compressed types are stored as they are")
+    public void test_tiposComprimidos_SinCompresion() {
+        assertEquals(StoreCodec.NOMBRE, selector.paraContentType("image/png", "a.png").getNombre());
+        assertEquals(StoreCodec.NOMBRE, selector.paraContentType("image/jpeg; charset=binary", "a.jpg").getNombre());
+        // Sin tipo o con el generico se decide por la extension
+        assertEquals(StoreCodec.NOMBRE, selector.paraContentType(null, "a.gif").getNombre());
+        assertEquals(StoreCodec.NOMBRE, selector.paraContentType("application/octet-stream", "a.webp").getNombre());
+    }
+
+    @Test
+    @DisplayName("Test to verify other types use the configured default codec")
+    public void test_otrosTipos_CodecPorDefecto() {
+        ImageCodec codec = selector.paraContentType("image/bmp", "a.bmp");
+        assertInstanceOf(DeflateCodec.class, codec);
+        assertEquals(1, ((DeflateCodec) codec).getNivel());
+        assertEquals(DeflateCodec.NOMBRE, selector.paraContentType(null, null).getNombre());
+
+        ReflectionTestUtils.setField(selector, "porDefecto", Lz4Codec.NOMBRE);
+        assertEquals(Lz4Codec.NOMBRE, selector.paraContentType("image/tiff", "a.tiff").getNombre());
+    }
+
+    @Test
+    @DisplayName("Test to verify a malformed content type falls back to the file extension")
+    public void test_contentTypeMalFormado_UsaExtension() {
+        assertEquals(StoreCodec.NOMBRE, selector.paraContentType("image/", "a.png").getNombre());
+        assertEquals(StoreCodec.NOMBRE, selector.paraContentType("no es un tipo", "a.png").getNombre());
+        assertEquals(DeflateCodec.NOMBRE, selector.paraContentType("image/", "sin-extension").getNombre());
+    }
+}
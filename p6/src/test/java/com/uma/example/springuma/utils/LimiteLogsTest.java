@@ -0,0 +1,89 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import com.uma.example.springuma.controller.MedicoController;
+import com.uma.example.springuma.model.PrediccionService;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+// Los mismos filtros que logback-spring.xml, en un LoggerContext propio para no tocar el de la aplicacion
+public class LimiteLogsTest {
+
+    private LoggerContext contexto;
+    private ListAppender<ILoggingEvent> appender;
+    private LimiteLogs limiteBorrados;
+
+    @BeforeEach
+    public void init() {
+        contexto = new LoggerContext();
+        appender = new ListAppender<>();
+        appender.setContext(contexto);
+        appender.addFilter(filtro("com.uma.example.springuma.prediccion", 100, 10));
+        limiteBorrados = filtro(MedicoController.LOGGER_BORRADOS, 1, 100);
+        appender.addFilter(limiteBorrados);
+        appender.start();
+        contexto.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).addAppender(appender);
+    }
+
+    @Test
+    @DisplayName("Test to verify model responses logged with the fluent API are sampled")
+    public void test_respuestas_Muestreadas() {
+        //ACT
+        Logger logPrediccion = contexto.getLogger(PrediccionService.LOGGER_RESPUESTAS);
+        for (int i = 0; i < 1000; i++) {
+            logPrediccion.atInfo().addKeyValue("imagenId", i).log("Prediccion de la imagen");
+        }
+
+        //ASSERT
+        // Una de cada 100: las 1000 caben en el limite de 10 por segundo salvo si cambia el segundo
+        assertTrue(appender.list.size() <= 10);
+        assertTrue(appender.list.size() >= 1);
+        assertEquals(0, appender.list.get(0).getKeyValuePairs().get(0).value);
+    }
+
+    @Test
+    @DisplayName("Test to verify delete logs are limited per second and counted, and warnings and other logs always pass")
+    public void test_limitePorSegundo_Y_Avisos() {
+        //ACT
+        Logger log = contexto.getLogger(MedicoController.LOGGER_BORRADOS);
+        long inicio = System.currentTimeMillis();
+        for (int i = 0; i < 500; i++) {
+            log.atInfo().addKeyValue("medicoId", i).log("Medico eliminado");
+        }
+        long segundos = (System.currentTimeMillis() - inicio) / 1000 + 1;
+        int informativos = appender.list.size();
+        for (int i = 0; i < 50; i++) {
+            log.warn("Aviso {}", i);
+        }
+        Logger controlador = contexto.getLogger(MedicoController.class.getName());
+        for (int i = 0; i < 500; i++) {
+            controlador.info("Otro log de la aplicacion {}", i);
+        }
+        contexto.getLogger("org.hibernate.SQL").info("Fuera del prefijo");
+
+        //ASSERT
+        assertTrue(informativos <= 100 * (segundos + 1));
+        assertTrue(informativos < 500);
+        assertEquals(500 - informativos, limiteBorrados.getDescartados());
+        assertEquals(informativos + 50 + 500 + 1, appender.list.size());
+    }
+
+    private LimiteLogs filtro(String prefijo, long muestreo, long porSegundo) {
+        LimiteLogs filtro = new LimiteLogs();
+        filtro.setContext(contexto);
+        filtro.setPrefijo(prefijo);
+        filtro.setMuestreo(muestreo);
+        filtro.setPorSegundo(porSegundo);
+        filtro.start();
+        return filtro;
+    }
+}